@@ -0,0 +1,165 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a credit followed by a debit on a single account, and of
+ * valuing an account holding several currencies.
+ *
+ * The bigDecimal benchmark replays the balance handling accounts used
+ * before balances were kept in minor units, as a reference point. Run with
+ * "-prof gc" to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountBenchmark {
+
+    /**
+     * Account under test.
+     */
+    private Account account;
+
+    /**
+     * Balances, the way accounts used to keep them.
+     */
+    private final Map<Currency, BigDecimal> balances = new HashMap<>();
+
+    /**
+     * Credited and debited amount.
+     */
+    private final BigDecimal amount = new BigDecimal("12.34");
+
+    /**
+     * Account currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Account shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        /**
+         * Shared account.
+         */
+        private Account account;
+
+        /**
+         * Create and fund the account.
+         * @throws Exception Account creation failed
+         */
+        @Setup
+        public void setup() throws Exception {
+            account = Banking.getInstance()
+                .getCurrentAccount("LT337300051000000002");
+            account.credit(new BigDecimal("1000.00"), "EUR");
+        }
+
+    }
+
+    /**
+     * Create and fund the account.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        account = Banking.getInstance()
+            .getCurrentAccount("LT337300051000000001");
+        account.credit(new BigDecimal("1000.00"), currency);
+        account.credit(new BigDecimal("500.00"), "USD");
+        account.credit(new BigDecimal("250.00"), "GBP");
+        balances.put(currency, new BigDecimal("1000.00"));
+    }
+
+    /**
+     * Credit and debit through the account.
+     * @return Account
+     */
+    @Benchmark
+    public Account creditDebit() {
+        account.credit(amount, currency);
+        account.debit(amount, currency);
+        return account;
+    }
+
+    /**
+     * Credit and debit an account all threads share.
+     * @param shared Shared account
+     * @return Account
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Account creditDebitContended(final Shared shared) {
+        shared.account.credit(amount, currency);
+        shared.account.debit(amount, currency);
+        return shared.account;
+    }
+
+    /**
+     * Total of three currencies in the base currency.
+     * @return Total
+     */
+    @Benchmark
+    public BigDecimal balanceAll() {
+        return account.balanceAll(currency);
+    }
+
+    /**
+     * Old balance lookup.
+     * @return Balance
+     */
+    private BigDecimal legacyBalance() {
+        return balances
+            .getOrDefault(currency, BigDecimal.ZERO)
+            .setScale(2, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * Old balance update.
+     * @param value New balance
+     */
+    private void legacySetBalance(final BigDecimal value) {
+        if (balances.containsKey(currency)) {
+            balances.remove(currency);
+        }
+        balances.put(currency, value);
+    }
+
+    /**
+     * Credit and debit the way BigDecimal balances did it.
+     * @return Balances
+     */
+    @Benchmark
+    public Map<Currency, BigDecimal> bigDecimal() {
+        Util.validateAmount(amount);
+        legacySetBalance(legacyBalance().add(amount));
+        Util.validateAmount(amount);
+        if (legacyBalance().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalStateException();
+        }
+        legacySetBalance(legacyBalance().subtract(amount));
+        return balances;
+    }
+
+}
@@ -0,0 +1,147 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load harness of the async facade: keeps a number of transfers in flight
+ * and waits for all of them, on a fixed pool or on virtual threads.
+ *
+ * Each transfer first waits for a simulated remote call, the way a
+ * gateway request would, which is where a platform thread per operation
+ * runs out. Virtual threads need a Java 21 JVM, see the jdk21 profile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AsyncBenchmark {
+
+    /**
+     * Threads of the fixed pool.
+     */
+    private static final int POOL = 64;
+
+    /**
+     * Number of accounts, transfers go within disjoint pairs, so pairs
+     * are independent of each other.
+     */
+    private static final int ACCOUNTS = 10000;
+
+    /**
+     * Executor: fixed pool or virtual threads.
+     */
+    @Param({"pool", "virtual"})
+    private String executor;
+
+    /**
+     * Transfers in flight.
+     */
+    @Param({"10000", "100000"})
+    private int inFlight;
+
+    /**
+     * Simulated remote call before each transfer, in microseconds.
+     */
+    @Param({"0", "1000"})
+    private int latency;
+
+    /**
+     * Executor service.
+     */
+    private ExecutorService service;
+
+    /**
+     * Facade.
+     */
+    private AsyncBanking async;
+
+    /**
+     * Accounts.
+     */
+    private final Account[] accounts = new Account[ACCOUNTS];
+
+    /**
+     * Transferred amount.
+     */
+    private final BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * Account currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Create the executor and fund the accounts.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        if ("virtual".equals(executor)) {
+            service = AsyncBanking.virtualExecutor();
+            if (service == null) {
+                throw new IllegalStateException(
+                    "Virtual threads need a Java 21 JVM");
+            }
+        } else {
+            service = Executors.newFixedThreadPool(POOL);
+        }
+        async = Banking.getInstance().async(service);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Banking.getInstance().getCurrentAccount(
+                String.format("LT3373000540%08d", i));
+            accounts[i].credit(new BigDecimal("1000000.00"), currency);
+        }
+    }
+
+    /**
+     * Shut the executor down.
+     */
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Submit transfers and wait for all of them.
+     */
+    @Benchmark
+    public void transfers() {
+        long wait = TimeUnit.MICROSECONDS.toNanos(latency);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[inFlight];
+        for (int i = 0; i < inFlight; i++) {
+            int pair = 2 * i % ACCOUNTS;
+            Account from = accounts[pair];
+            Account to = accounts[pair + 1];
+            futures[i] = async.submit(from, to, () -> {
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                from.debit(amount, currency, to);
+                return null;
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+}
@@ -0,0 +1,120 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bank lookup by country and code: the packed key directory against maps
+ * nested per country, keyed by boxed codes. Lookup by BIC for reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankDirectoryBenchmark {
+
+    /**
+     * Countries the banks are spread across.
+     */
+    private static final String[] COUNTRIES = {"LT", "LV", "EE", "DE", "FR",
+        "PL", "FI", "SE", "NO", "DK"};
+
+    /**
+     * Number of banks.
+     */
+    @Param({"50000"})
+    private int banks;
+
+    /**
+     * Directory.
+     */
+    private final BankDirectory directory = new BankDirectory();
+
+    /**
+     * Maps nested per country.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Integer, Bank>> nested =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Country of every bank.
+     */
+    private String[] countries;
+
+    /**
+     * Code of every bank.
+     */
+    private int[] codes;
+
+    /**
+     * BIC of every bank.
+     */
+    private String[] bics;
+
+    /**
+     * Fill both structures.
+     */
+    @Setup
+    public void setup() {
+        countries = new String[banks];
+        codes = new int[banks];
+        bics = new String[banks];
+        for (int i = 0; i < banks; i++) {
+            countries[i] = COUNTRIES[i % COUNTRIES.length];
+            codes[i] = 10000 + i;
+            bics[i] = String.format("B%03d%s%02d%03d", i / 100000, countries[i],
+                i / 1000 % 100, i % 1000);
+            Bank bank = new Bank(countries[i], codes[i], bics[i], "Bank " + i);
+            directory.putIfAbsent(bank);
+            nested.computeIfAbsent(countries[i], k -> new ConcurrentHashMap<>())
+                .put(codes[i], bank);
+        }
+    }
+
+    /**
+     * Look up a random bank in the directory.
+     * @return Bank
+     */
+    @Benchmark
+    public Bank directory() {
+        int i = ThreadLocalRandom.current().nextInt(banks);
+        return directory.get(countries[i], codes[i]);
+    }
+
+    /**
+     * Look up a random bank in the nested maps.
+     * @return Bank
+     */
+    @Benchmark
+    public Bank nested() {
+        int i = ThreadLocalRandom.current().nextInt(banks);
+        return nested.get(countries[i]).get(codes[i]);
+    }
+
+    /**
+     * Look up a random bank by BIC.
+     * @return Bank
+     */
+    @Benchmark
+    public Bank bic() {
+        int i = ThreadLocalRandom.current().nextInt(banks);
+        return directory.getByBic(bics[i]);
+    }
+
+}
@@ -0,0 +1,123 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+import lt.vu.mif.jate.task01.bank.exception.WrongAccountTypeException;
+
+/**
+ * Account registry: lookup of existing accounts against creation of new
+ * ones.
+ *
+ * Creation runs in batches of single shots, so the registry does not grow
+ * without bound while the benchmark runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankingBenchmark {
+
+    /**
+     * Number of existing accounts lookups are spread across.
+     */
+    private static final int ACCOUNTS = 4096;
+
+    /**
+     * Number of accounts created per measured shot.
+     */
+    private static final int BATCH = 10000;
+
+    /**
+     * IBANs of existing accounts.
+     */
+    private final String[] ibans = new String[ACCOUNTS];
+
+    /**
+     * Serial number of the next created account.
+     */
+    private final AtomicLong serial = new AtomicLong(80000000000L);
+
+    /**
+     * Banking service.
+     */
+    private Banking banking;
+
+    /**
+     * Create the accounts to look up.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        banking = Banking.getInstance();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ibans[i] = String.format("LT3373000%011d", 70000000000L + i);
+            banking.getCurrentAccount(ibans[i]);
+        }
+    }
+
+    /**
+     * Look up a random existing account.
+     * @return Account
+     * @throws IBANException Never
+     * @throws WrongAccountTypeException Never
+     */
+    private Account lookup()
+            throws IBANException, WrongAccountTypeException {
+        int i = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        return banking.getCurrentAccount(ibans[i]);
+    }
+
+    /**
+     * Single looking up thread.
+     * @return Account
+     * @throws Exception Never
+     */
+    @Benchmark
+    @Threads(1)
+    public Account lookupSingle() throws Exception {
+        return lookup();
+    }
+
+    /**
+     * One looking up thread per core.
+     * @return Account
+     * @throws Exception Never
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Account lookupContended() throws Exception {
+        return lookup();
+    }
+
+    /**
+     * Create a brand new account.
+     * @return Account
+     * @throws Exception Never
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public Account create() throws Exception {
+        return banking.getCurrentAccount(
+            String.format("LT3373000%011d", serial.getAndIncrement()));
+    }
+
+}
@@ -0,0 +1,113 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Currency conversion through both Converter.convert overloads, and
+ * parsing of amount strings.
+ *
+ * The legacy benchmark replays the amount handling the string overloads
+ * used before, a regular expression and two BigDecimal parses, as a
+ * reference point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+    /**
+     * Converter under test.
+     */
+    private final Converter converter = Converter.getInstance();
+
+    /**
+     * Amount as a string.
+     */
+    private final String text = "1234.56";
+
+    /**
+     * Amount as a number.
+     */
+    private final BigDecimal amount = new BigDecimal(text);
+
+    /**
+     * Source currency.
+     */
+    private final Currency from = Currency.getInstance("USD");
+
+    /**
+     * Target currency.
+     */
+    private final Currency to = Currency.getInstance("GBP");
+
+    /**
+     * Amount and currency codes given as strings.
+     * @return Converted amount
+     */
+    @Benchmark
+    @Threads(1)
+    public BigDecimal convertString() {
+        return converter.convert(text, "USD", "GBP");
+    }
+
+    /**
+     * Amount and currencies given as objects.
+     * @return Converted amount
+     */
+    @Benchmark
+    @Threads(1)
+    public BigDecimal convertDecimal() {
+        return converter.convert(amount, from, to);
+    }
+
+    /**
+     * Amount and currencies given as objects, one thread per core.
+     * @return Converted amount
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BigDecimal convertDecimalContended() {
+        return converter.convert(amount, from, to);
+    }
+
+    /**
+     * Amount string parsed.
+     * @return Amount
+     */
+    @Benchmark
+    @Threads(1)
+    public BigDecimal parseAmount() {
+        return Util.parseAmount(text);
+    }
+
+    /**
+     * Amount string checked and parsed the old way.
+     * @return Amount
+     */
+    @Benchmark
+    @Threads(1)
+    public BigDecimal parseAmountLegacy() {
+        if (!text.matches("\\d*\\.?\\d+")) {
+            throw new NumberFormatException();
+        }
+        Util.validateAmount(new BigDecimal(text));
+        return new BigDecimal(text);
+    }
+
+}
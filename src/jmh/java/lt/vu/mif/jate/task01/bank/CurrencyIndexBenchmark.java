@@ -0,0 +1,93 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Currency lookup by code and ordinal lookup by currency: the packed code
+ * table against Currency.getInstance and a map of ordinals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CurrencyIndexBenchmark {
+
+    /**
+     * Currency code.
+     */
+    private String code = "GBP";
+
+    /**
+     * Currency object.
+     */
+    private Currency currency;
+
+    /**
+     * Ordinals, the way they used to be kept.
+     */
+    private final Map<Currency, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Fill the map.
+     */
+    @Setup
+    public void setup() {
+        currency = Currency.getInstance(code);
+        for (int i = 0; i < CurrencyIndex.size(); i++) {
+            ordinals.put(CurrencyIndex.currency(i), i);
+        }
+    }
+
+    /**
+     * Currency by code from the table.
+     * @return Currency
+     */
+    @Benchmark
+    public Currency currencyIndex() {
+        return CurrencyIndex.currency(code);
+    }
+
+    /**
+     * Currency by code from the JDK.
+     * @return Currency
+     */
+    @Benchmark
+    public Currency currencyGetInstance() {
+        return Currency.getInstance(code);
+    }
+
+    /**
+     * Ordinal by currency from the table.
+     * @return Ordinal
+     */
+    @Benchmark
+    public int ordinalIndex() {
+        return CurrencyIndex.ordinal(currency);
+    }
+
+    /**
+     * Ordinal by currency from a map.
+     * @return Ordinal
+     */
+    @Benchmark
+    public int ordinalMap() {
+        return ordinals.get(currency);
+    }
+
+}
@@ -0,0 +1,107 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a balance change, with and without a subscriber to the change
+ * events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBusBenchmark {
+
+    /**
+     * Whether a subscriber listens to the events.
+     */
+    @Param({"false", "true"})
+    private boolean subscribed;
+
+    /**
+     * Account.
+     */
+    private Account account;
+
+    /**
+     * Changed amount.
+     */
+    private final BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * Account currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Subscription, if any.
+     */
+    private BalanceSubscription subscription;
+
+    /**
+     * Events seen by the subscriber.
+     */
+    private volatile long seen;
+
+    /**
+     * Create and fund the account, and subscribe.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        account = Banking.getInstance()
+            .getCurrentAccount("LT337300053000000001");
+        account.credit(new BigDecimal("1.00"), currency);
+        if (subscribed) {
+            subscription = Banking.getInstance()
+                .subscribe(e -> seen = e.getSequence());
+        }
+    }
+
+    /**
+     * Close the subscription.
+     * @throws Exception Interrupted
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+
+    /**
+     * Credit, that publishes one event.
+     * @return Status
+     */
+    @Benchmark
+    public PostingStatus credit() {
+        return account.tryCredit(amount, currency);
+    }
+
+    /**
+     * Transfer, that publishes two events.
+     */
+    @Benchmark
+    public void transfer() {
+        account.debit(amount, currency, account);
+    }
+
+}
@@ -0,0 +1,90 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap retained per account: a fresh Banking service is filled with
+ * accounts, and the live heap it adds after a full collection is
+ * reported per account as the "retained" counter.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class FootprintBenchmark {
+
+    /**
+     * Number of accounts.
+     */
+    @Param({"500000"})
+    private int accounts;
+
+    /**
+     * Retained heap per account, reported as a secondary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+
+        /**
+         * Bytes retained per account.
+         */
+        public long retained;
+
+        /**
+         * Reset the counter.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            retained = 0;
+        }
+
+    }
+
+    /**
+     * Measure the live heap after a full collection.
+     * @return Used bytes
+     */
+    private static long live() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Fill a Banking service with accounts.
+     * @param counter Retained heap per account
+     * @return Banking service
+     * @throws Exception Account creation failed
+     */
+    @Benchmark
+    public Banking fill(final Retained counter) throws Exception {
+        long before = live();
+        Banking banking = new Banking();
+        for (int i = 0; i < accounts; i++) {
+            banking.getCurrentAccount(String.format("LT3373000%011d",
+                10000000000L + i));
+        }
+        counter.retained = (live() - before) / accounts;
+        return banking;
+    }
+
+}
@@ -0,0 +1,86 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+
+/**
+ * IBAN check digit verification: streaming int remainder against the
+ * textbook rearrange-and-BigInteger approach.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IBANChecksumBenchmark {
+
+    /**
+     * Modulus as a BigInteger.
+     */
+    private static final BigInteger MOD = BigInteger.valueOf(97);
+
+    /**
+     * Valid, normalized IBAN.
+     */
+    @Param({"DE89370400440532013000", "LT047300010077211111",
+        "QA629876111122223333444455556"})
+    private String iban;
+
+    /**
+     * Streaming mod-97 over the characters.
+     * @return Whether valid
+     */
+    @Benchmark
+    public boolean streaming() {
+        return IBANParser.isChecksumValid(iban);
+    }
+
+    /**
+     * Rearrange, expand letters into digits, then BigInteger.mod.
+     * @return Whether valid
+     */
+    @Benchmark
+    public boolean naive() {
+        String rearranged = iban.substring(4) + iban.substring(0, 4);
+        StringBuilder digits = new StringBuilder();
+        for (char c: rearranged.toCharArray()) {
+            digits.append(Character.digit(c, Character.MAX_RADIX));
+        }
+        return new BigInteger(digits.toString()).mod(MOD).intValue() == 1;
+    }
+
+    /**
+     * Full parse without verification.
+     * @return IBAN
+     * @throws IBANException Never
+     */
+    @Benchmark
+    public IBAN parse() throws IBANException {
+        return IBANParser.parse(iban, false);
+    }
+
+    /**
+     * Full parse with verification.
+     * @return IBAN
+     * @throws IBANException Never
+     */
+    @Benchmark
+    public IBAN parseVerified() throws IBANException {
+        return IBANParser.parse(iban, true);
+    }
+
+}
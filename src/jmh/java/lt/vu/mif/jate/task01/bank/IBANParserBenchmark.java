@@ -0,0 +1,82 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+
+/**
+ * IBAN normalization and parsing. Run with "-prof gc" to see allocation
+ * per parsed IBAN.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IBANParserBenchmark {
+
+    /**
+     * IBAN as it comes in.
+     */
+    @Param({"LT337300010077211111", "lt33 7300 0100 7721 1111",
+        "QA999876111122223333444455556"})
+    private String iban;
+
+    /**
+     * Same IBAN as ASCII bytes.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * Encode the IBAN.
+     */
+    @Setup
+    public void setup() {
+        bytes = ByteBuffer.wrap(iban.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Normalize only.
+     * @return Normalized IBAN
+     */
+    @Benchmark
+    public String normalize() {
+        return IBANParser.normalize(iban);
+    }
+
+    /**
+     * Parse from a string.
+     * @return IBAN
+     * @throws IBANException Never
+     */
+    @Benchmark
+    public IBAN parse() throws IBANException {
+        return IBANParser.parse(iban);
+    }
+
+    /**
+     * Parse from a byte buffer.
+     * @return IBAN
+     * @throws IBANException Never
+     */
+    @Benchmark
+    public IBAN parseBytes() throws IBANException {
+        return IBANParser.parse(bytes);
+    }
+
+}
@@ -0,0 +1,139 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a durable credit: every call returns only once its record is
+ * forced to disk. With more threads, one force covers more credits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    /**
+     * Banking with a journal open.
+     */
+    @State(Scope.Benchmark)
+    public static class Journaled {
+
+        /**
+         * Whether to journal at all.
+         */
+        @Param({"true", "false"})
+        private boolean journal;
+
+        /**
+         * Journal file.
+         */
+        private Path file;
+
+        /**
+         * Open the journal.
+         * @throws Exception File can not be created
+         */
+        @Setup
+        public void setup() throws Exception {
+            file = Files.createTempFile("journal", ".bin");
+            if (journal) {
+                Banking.getInstance().openJournal(file);
+            }
+        }
+
+        /**
+         * Close and delete the journal.
+         * @throws Exception File can not be closed
+         */
+        @TearDown
+        public void tearDown() throws Exception {
+            Banking.getInstance().closeJournal();
+            Files.delete(file);
+        }
+
+    }
+
+    /**
+     * Account of a single benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Owner {
+
+        /**
+         * Number of accounts handed out.
+         */
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        /**
+         * Account of the thread.
+         */
+        private Account account;
+
+        /**
+         * Open the account.
+         * @param journaled Make sure the journal is open first
+         * @throws Exception Account creation failed
+         */
+        @Setup
+        public void setup(final Journaled journaled) throws Exception {
+            account = Banking.getInstance().getCurrentAccount(String.format(
+                "LT3373000%011d", 30000000000L + COUNT.getAndIncrement()));
+        }
+
+    }
+
+    /**
+     * Credited amount.
+     */
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    /**
+     * Credited currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Single crediting thread.
+     * @param owner Account of the thread
+     * @return Account
+     */
+    @Benchmark
+    @Threads(1)
+    public Account single(final Owner owner) {
+        owner.account.credit(AMOUNT, EUR);
+        return owner.account;
+    }
+
+    /**
+     * Many crediting threads, sharing forces.
+     * @param owner Account of the thread
+     * @return Account
+     */
+    @Benchmark
+    @Threads(32)
+    public Account grouped(final Owner owner) {
+        owner.account.credit(AMOUNT, EUR);
+        return owner.account;
+    }
+
+}
@@ -0,0 +1,164 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the async facade with the number of threads: account locks
+ * on a fixed pool, against single-writer ledger shards.
+ *
+ * Each invocation submits a batch of credits or transfers between random
+ * accounts and waits for all of them; scores are per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LedgerBenchmark {
+
+    /**
+     * Operations per invocation.
+     */
+    private static final int BATCH = 65536;
+
+    /**
+     * Number of accounts.
+     */
+    private static final int ACCOUNTS = 4096;
+
+    /**
+     * Execution mode: account locks on a pool, or ledger shards.
+     */
+    @Param({"locking", "sharded"})
+    private String mode;
+
+    /**
+     * Pool threads, or shards.
+     */
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    /**
+     * Pool of the locking mode.
+     */
+    private ExecutorService pool;
+
+    /**
+     * Facade.
+     */
+    private AsyncBanking async;
+
+    /**
+     * Accounts.
+     */
+    private final Account[] accounts = new Account[ACCOUNTS];
+
+    /**
+     * Source account of every operation.
+     */
+    private final int[] from = new int[BATCH];
+
+    /**
+     * Target account of every transfer.
+     */
+    private final int[] to = new int[BATCH];
+
+    /**
+     * Amount.
+     */
+    private final BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * Account currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Futures of a batch.
+     */
+    private final CompletableFuture<?>[] futures =
+        new CompletableFuture<?>[BATCH];
+
+    /**
+     * Create the facade, fund the accounts and pick the operations.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        if ("sharded".equals(mode)) {
+            async = Banking.getInstance().async(threads);
+        } else {
+            pool = Executors.newFixedThreadPool(threads);
+            async = Banking.getInstance().async(pool);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Banking.getInstance().getCurrentAccount(
+                String.format("LT3373000550%08d", i));
+            accounts[i].credit(new BigDecimal("1000000.00"), currency);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < BATCH; i++) {
+            from[i] = random.nextInt(ACCOUNTS);
+            to[i] = random.nextInt(ACCOUNTS);
+        }
+    }
+
+    /**
+     * Stop the shards or the pool.
+     */
+    @TearDown
+    public void tearDown() {
+        async.close();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Credit random accounts.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void credits() {
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = async.creditAsync(accounts[from[i]], amount,
+                currency);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * Transfer between random accounts.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void transfers() {
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = async.transferAsync(accounts[from[i]],
+                accounts[to[i]], amount, currency);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+}
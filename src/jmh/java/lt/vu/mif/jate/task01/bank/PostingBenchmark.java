@@ -0,0 +1,110 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A ledger of 10000 alternating credits and debits, applied as one batch
+ * and one call at a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PostingBenchmark {
+
+    /**
+     * Number of postings in the ledger.
+     */
+    private static final int POSTINGS = 10000;
+
+    /**
+     * Number of accounts postings are spread across.
+     */
+    @Param({"10", "1000"})
+    private int accounts;
+
+    /**
+     * Ledger.
+     */
+    private final List<Posting> ledger = new ArrayList<>();
+
+    /**
+     * Banking service.
+     */
+    private Banking banking;
+
+    /**
+     * Create and fund the accounts, build the ledger.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        banking = Banking.getInstance();
+        BigDecimal amount = new BigDecimal("1.25");
+        for (int i = 0; i < POSTINGS; i++) {
+            String iban = String.format("LT3373000%011d",
+                60000000000L + i % accounts);
+            banking.getCurrentAccount(iban)
+                .credit(new BigDecimal("1000.00"), "EUR");
+            Posting.Direction direction = Posting.Direction.CREDIT;
+            if (i / accounts % 2 == 1) {
+                direction = Posting.Direction.DEBIT;
+            }
+            ledger.add(new Posting(iban, direction, amount, "EUR"));
+        }
+    }
+
+    /**
+     * One batch, best effort.
+     * @return Outcomes
+     */
+    @Benchmark
+    public List<PostingStatus> batch() {
+        return banking.post(ledger, BatchMode.BEST_EFFORT);
+    }
+
+    /**
+     * One batch, all or nothing.
+     * @return Outcomes
+     */
+    @Benchmark
+    public List<PostingStatus> batchAtomic() {
+        return banking.post(ledger, BatchMode.ALL_OR_NOTHING);
+    }
+
+    /**
+     * Lookup and a credit or debit call per posting.
+     * @return Banking
+     * @throws Exception Never
+     */
+    @Benchmark
+    public Banking perCall() throws Exception {
+        for (Posting posting: ledger) {
+            Account account = banking.getCurrentAccount(posting.getIban());
+            if (posting.getDirection() == Posting.Direction.CREDIT) {
+                account.credit(posting.getAmount(), posting.getCurrency());
+            } else {
+                account.debit(posting.getAmount(), posting.getCurrency());
+            }
+        }
+        return banking;
+    }
+
+}
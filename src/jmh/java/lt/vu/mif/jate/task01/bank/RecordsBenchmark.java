@@ -0,0 +1,113 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a bank directory: streaming records from a channel against
+ * reading all lines with a Scanner and splitting them with a regex.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordsBenchmark {
+
+    /**
+     * Number of banks in the directory.
+     */
+    @Param({"50000"})
+    private int banks;
+
+    /**
+     * Bank directory file.
+     */
+    private Path file;
+
+    /**
+     * Write the bank directory.
+     * @throws Exception File can not be written
+     */
+    @Setup
+    public void setup() throws Exception {
+        file = Files.createTempFile("banks", ".txt");
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < banks; i++) {
+                out.write("Akcinė bendrovė bankas " + i + ":Gedimino Ave. "
+                    + i + ", LT-01103 Vilnius:CBVILT2X" + (i % 1000)
+                    + ":" + (10000 + i));
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Delete the bank directory.
+     * @throws Exception File can not be deleted
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.delete(file);
+    }
+
+    /**
+     * Stream the records to a callback.
+     * @return Banks
+     * @throws Exception File can not be read
+     */
+    @Benchmark
+    public List<Bank> records() throws Exception {
+        List<Bank> loaded = new ArrayList<>(banks);
+        Records.read(file, ':', line -> loaded.add(new Bank("LT",
+            line.getInt(3), line.get(2), line.get(0), line.get(1))));
+        return loaded;
+    }
+
+    /**
+     * Read lines with a Scanner, then split them.
+     * @return Banks
+     * @throws Exception File can not be read
+     */
+    @Benchmark
+    public List<Bank> scanner() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (Scanner scanner = new Scanner(file.toFile(), "UTF-8")) {
+            while (scanner.hasNextLine()) {
+                lines.add(scanner.nextLine());
+            }
+        }
+        List<String[]> split = new ArrayList<>();
+        for (String line: lines) {
+            split.add(line.split(":"));
+        }
+        List<Bank> loaded = new ArrayList<>(banks);
+        for (String[] line: split) {
+            loaded.add(new Bank("LT", Integer.parseInt(line[3]), line[2],
+                line[0], line[1]));
+        }
+        return loaded;
+    }
+
+}
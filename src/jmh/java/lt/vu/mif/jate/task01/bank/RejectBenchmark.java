@@ -0,0 +1,164 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
+
+/**
+ * Cost of refusing a debit and rejecting an IBAN, next to the cost of
+ * the same operation succeeding.
+ *
+ * The legacy benchmarks throw a new exception with a full stack trace,
+ * the way refusals used to be reported, as a reference point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectBenchmark {
+
+    /**
+     * Valid IBAN.
+     */
+    private static final String VALID = "LT337300052000000003";
+
+    /**
+     * IBAN of a wrong length.
+     */
+    private static final String INVALID = "LT33730005200000000";
+
+    /**
+     * Account with enough funds for any run.
+     */
+    private Account funded;
+
+    /**
+     * Account without funds.
+     */
+    private Account empty;
+
+    /**
+     * Debited amount.
+     */
+    private final BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * Account currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Receives parsed IBANs.
+     */
+    private final IBAN[] parsed = new IBAN[1];
+
+    /**
+     * Create the accounts.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        funded = Banking.getInstance()
+            .getCurrentAccount("LT337300052000000001");
+        funded.credit(new BigDecimal("1000000000000.00"), currency);
+        empty = Banking.getInstance()
+            .getCurrentAccount("LT337300052000000002");
+    }
+
+    /**
+     * Debit, that is applied.
+     * @return Status
+     */
+    @Benchmark
+    public PostingStatus debitApplied() {
+        return funded.tryDebit(amount, currency);
+    }
+
+    /**
+     * Debit, that is refused with a status.
+     * @return Status
+     */
+    @Benchmark
+    public PostingStatus debitRefused() {
+        return empty.tryDebit(amount, currency);
+    }
+
+    /**
+     * Debit, that is refused with the shared exception.
+     * @return Exception
+     */
+    @Benchmark
+    public RuntimeException debitThrown() {
+        try {
+            empty.debit(amount, currency);
+            return null;
+        } catch (NoFundsException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Debit, that is refused with a new exception and its stack trace.
+     * @return Exception
+     */
+    @Benchmark
+    public RuntimeException debitThrownLegacy() {
+        try {
+            if (empty.tryDebit(amount, currency) != PostingStatus.APPLIED) {
+                throw new IllegalStateException();
+            }
+            return null;
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    /**
+     * IBAN, that is parsed.
+     * @return Status
+     */
+    @Benchmark
+    public IBANStatus parseValid() {
+        return IBANParser.tryParse(VALID, false, parsed);
+    }
+
+    /**
+     * IBAN, that is rejected with a status.
+     * @return Status
+     */
+    @Benchmark
+    public IBANStatus parseRejected() {
+        return IBANParser.tryParse(INVALID, false, parsed);
+    }
+
+    /**
+     * IBAN, that is rejected with an exception.
+     * @return Exception
+     */
+    @Benchmark
+    public IBANException parseThrown() {
+        try {
+            IBANParser.parse(INVALID, false);
+            return null;
+        } catch (IBANException e) {
+            return e;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Service lookup from many threads at once: lazy holders against the
+ * static synchronized accessors they replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class SingletonBenchmark {
+
+    /**
+     * Instance of the legacy accessor.
+     */
+    private static Banking legacy;
+
+    /**
+     * Replica of the former static synchronized Banking.getInstance.
+     * @return Instance
+     */
+    private static synchronized Banking legacyInstance() {
+        if (legacy == null) {
+            legacy = Banking.getInstance();
+        }
+        return legacy;
+    }
+
+    /**
+     * Banking through its holder.
+     * @return Instance
+     */
+    @Benchmark
+    public Banking banking() {
+        return Banking.getInstance();
+    }
+
+    /**
+     * Converter through its holder.
+     * @return Instance
+     */
+    @Benchmark
+    public Converter converter() {
+        return Converter.getInstance();
+    }
+
+    /**
+     * Banking through a class monitor, as before.
+     * @return Instance
+     */
+    @Benchmark
+    public Banking legacy() {
+        return legacyInstance();
+    }
+
+}
@@ -0,0 +1,122 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold start of a book: loading a snapshot against replaying a journal,
+ * that opens and credits every account, into an empty Banking service.
+ * Writing the snapshot is measured as well.
+ *
+ * Give the JVM a bigger heap (-jvmArgs -Xmx) for larger books.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    /**
+     * Number of accounts in the book.
+     */
+    @Param({"1000000"})
+    private int accounts;
+
+    /**
+     * Banking service, that holds the book.
+     */
+    private Banking banking;
+
+    /**
+     * Snapshot of the book.
+     */
+    private Path snapshot;
+
+    /**
+     * Journal of the book.
+     */
+    private Path journal;
+
+    /**
+     * Build the book, its journal and its snapshot.
+     * @throws Exception Files can not be written
+     */
+    @Setup
+    public void setup() throws Exception {
+        banking = new Banking();
+        journal = Files.createTempFile("journal", ".bin");
+        snapshot = Files.createTempFile("snapshot", ".bin");
+        Currency eur = Currency.getInstance("EUR");
+        BigDecimal amount = new BigDecimal("10.00");
+        try (Journal out = Journal.open(journal)) {
+            for (int i = 0; i < accounts; i++) {
+                Account account = banking.getCurrentAccount(String.format(
+                    "LT3373000%011d", 20000000000L + i));
+                account.credit(amount, eur);
+                out.open(account);
+                synchronized (account) {
+                    out.post(account, Posting.Direction.CREDIT, 1000, eur);
+                }
+            }
+        }
+        banking.writeSnapshot(snapshot).join();
+    }
+
+    /**
+     * Delete the files.
+     * @throws Exception Files can not be deleted
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.delete(journal);
+        Files.delete(snapshot);
+    }
+
+    /**
+     * Load the snapshot.
+     * @return Number of accounts loaded
+     * @throws Exception File can not be read
+     */
+    @Benchmark
+    public long loadSnapshot() throws Exception {
+        return Snapshots.load(snapshot, new Banking());
+    }
+
+    /**
+     * Replay the journal.
+     * @return Number of records replayed
+     * @throws Exception File can not be read
+     */
+    @Benchmark
+    public long replayJournal() throws Exception {
+        return Journal.replay(journal, new Banking());
+    }
+
+    /**
+     * Write a snapshot of the book.
+     * @return Number of accounts written
+     */
+    @Benchmark
+    public long writeSnapshot() {
+        return banking.writeSnapshot(snapshot).join();
+    }
+
+}
@@ -0,0 +1,99 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of transfers between random pairs of current accounts.
+ *
+ * With few accounts most transfers collide on the same monitors, with many
+ * accounts they mostly run in parallel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    /**
+     * Number of accounts transfers are spread across.
+     */
+    @Param({"2", "64", "4096"})
+    private int accounts;
+
+    /**
+     * Accounts under test.
+     */
+    private Account[] pool;
+
+    /**
+     * Transferred amount.
+     */
+    private final BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * Transfer currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Create and fund the accounts.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        Banking banking = Banking.getInstance();
+        pool = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            pool[i] = banking.getCurrentAccount(
+                String.format("LT3373000%011d", 50000000000L + i));
+            pool[i].credit(new BigDecimal("1000000000.00"), currency);
+        }
+    }
+
+    /**
+     * Pick two distinct accounts and move a cent between them.
+     */
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        pool[from].debit(amount, currency, pool[to]);
+    }
+
+    /**
+     * Single transferring thread.
+     */
+    @Benchmark
+    @Threads(1)
+    public void single() {
+        transfer();
+    }
+
+    /**
+     * One transferring thread per core.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void contended() {
+        transfer();
+    }
+
+}
@@ -0,0 +1,122 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Valuation of the whole book, on pools of different size, against
+ * calling balanceAll on every account of the book.
+ *
+ * Give the JVM a bigger heap (-jvmArgs -Xmx) for larger books.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValuationBenchmark {
+
+    /**
+     * Number of accounts in the book.
+     */
+    @Param({"100000"})
+    private int accounts;
+
+    /**
+     * Pool parallelism, 0 for one thread per core.
+     */
+    @Param({"1", "0"})
+    private int threads;
+
+    /**
+     * Pool to valuate on.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Valuation currency.
+     */
+    private final Currency currency = Currency.getInstance("EUR");
+
+    /**
+     * Banking service.
+     */
+    private Banking banking;
+
+    /**
+     * Accounts of the book.
+     */
+    private Account[] book;
+
+    /**
+     * Open and fund the accounts.
+     * @throws Exception Account creation failed
+     */
+    @Setup
+    public void setup() throws Exception {
+        banking = Banking.getInstance();
+        String[] currencies = {"EUR", "USD", "GBP", "JPY"};
+        book = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            Account account = banking.getCurrentAccount(
+                String.format("LT3373000%011d", 40000000000L + i));
+            account.credit(new BigDecimal("100.00"), currencies[i % 4]);
+            account.credit(new BigDecimal("10.00"), currencies[i % 3]);
+            book[i] = account;
+        }
+        if (threads == 0) {
+            pool = new ForkJoinPool();
+        } else {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Stop the pool.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Fork-join valuation.
+     * @return Valuation
+     */
+    @Benchmark
+    public Valuation valuate() {
+        return banking.valuate(currency, banking.getConverter().getRates(),
+            pool);
+    }
+
+    /**
+     * balanceAll on every account, one at a time.
+     * @return Total
+     */
+    @Benchmark
+    public BigDecimal perAccount() {
+        ExchangeRates rates = banking.getConverter().getRates();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account: book) {
+            total = total.add(account.balanceAll(currency, rates));
+        }
+        return total;
+    }
+
+}
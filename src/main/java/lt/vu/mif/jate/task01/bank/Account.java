@@ -1,5 +1,6 @@
 package lt.vu.mif.jate.task01.bank;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lt.vu.mif.jate.task01.bank.exception.IBANException;
 import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
@@ -7,19 +8,27 @@ import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Currency;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * An abstract Account class.
  *
  * Not meant to be used directly, but via Banking facade.
+ *
+ * All balance reads and writes are guarded by the account's own monitor.
+ * Operations touching two accounts lock both monitors in IBAN order,
+ * see {@link Transfers}. Balance changes are recorded in the {@link Journal}
+ * of the Banking service the account belongs to, while the monitor is
+ * held and before the balance changes, and synced to disk after it is
+ * released.
+ * The account remembers the journal position of its last change, so that
+ * recovery from a {@link Snapshots snapshot} replays only what came after.
  */
 public abstract class Account {
 
     /**
      * IBAN object.
      */
+    @Getter(AccessLevel.PACKAGE)
     private IBAN iban;
 
     /**
@@ -29,17 +38,30 @@ public abstract class Account {
     private Bank bank;
 
     /**
-     * Map of currency to balance.
+     * Banking service, that the account belongs to and whose journal and
+     * events record its changes.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final Banking banking;
+
+    /**
+     * Balances in minor units, keyed by currency ordinal.
+     */
+    private final BalanceTable balances = new BalanceTable();
+
+    /**
+     * Journal position after the last change of this account.
      */
-    private Map<Currency, BigDecimal> balances = new HashMap<>();
+    private long journalPosition;
 
     /**
-     * Constructor, that takes IBAN as a string.
+     * Constructor, that takes IBAN as a string. The account belongs to the
+     * service instance.
      * @param x IBAN string
      * @throws IBANException Malformed IBAN string
      */
     protected Account(final String x) throws IBANException {
-        this(IBANParser.parse(x));
+        this(IBANParser.parse(x, Banking.getInstance().isVerifyChecksum()));
     }
 
     /**
@@ -47,9 +69,21 @@ public abstract class Account {
      * @param x IBAN object
      */
     private Account(final IBAN x) {
+        this(x, Banking.getInstance()
+            .getBankOrCreate(x.getCountry(), x.getBankCode()),
+            Banking.getInstance());
+    }
+
+    /**
+     * Constructor, that takes an already parsed IBAN and its bank.
+     * @param x IBAN object
+     * @param y Bank of the account
+     * @param z Banking service, that the account belongs to
+     */
+    Account(final IBAN x, final Bank y, final Banking z) {
         this.iban = x;
-        this.bank = Banking.getInstance()
-            .getBankOrCreate(iban.getCountry(), iban.getBankCode());
+        this.bank = y;
+        this.banking = z;
     }
 
     /**
@@ -66,7 +100,7 @@ public abstract class Account {
      * @param currency Currency code
      */
     public final void credit(final BigDecimal amount, final String currency) {
-        credit(amount, Currency.getInstance(currency));
+        credit(amount, CurrencyIndex.currency(currency));
     }
 
     /**
@@ -82,7 +116,7 @@ public abstract class Account {
      * @param currency Currency code
      */
     public final void debit(final BigDecimal amount, final String currency) {
-        debit(amount, Currency.getInstance(currency));
+        debit(amount, CurrencyIndex.currency(currency));
     }
 
     /**
@@ -92,6 +126,142 @@ public abstract class Account {
      */
     public abstract void debit(BigDecimal amount, Currency currency);
 
+    /**
+     * Credit an account, reporting a refusal instead of throwing.
+     * @param amount Amount
+     * @param currency Currency code
+     * @return APPLIED, or the reason the credit is refused
+     */
+    public final PostingStatus tryCredit(final BigDecimal amount,
+            final String currency) {
+        return tryCredit(amount, CurrencyIndex.currency(currency));
+    }
+
+    /**
+     * Credit an account, reporting a refusal instead of throwing.
+     * @param amount Amount
+     * @param currency Currency object
+     * @return APPLIED, or the reason the credit is refused
+     */
+    public final PostingStatus tryCredit(final BigDecimal amount,
+            final Currency currency) {
+        return tryPost(Posting.Direction.CREDIT, amount, currency);
+    }
+
+    /**
+     * Debit an account, reporting a refusal instead of throwing.
+     * @param amount Amount
+     * @param currency Currency code
+     * @return APPLIED, or the reason the debit is refused
+     */
+    public final PostingStatus tryDebit(final BigDecimal amount,
+            final String currency) {
+        return tryDebit(amount, CurrencyIndex.currency(currency));
+    }
+
+    /**
+     * Debit an account, reporting a refusal instead of throwing.
+     * @param amount Amount
+     * @param currency Currency object
+     * @return APPLIED, or the reason the debit is refused
+     */
+    public final PostingStatus tryDebit(final BigDecimal amount,
+            final Currency currency) {
+        return tryPost(Posting.Direction.DEBIT, amount, currency);
+    }
+
+    /**
+     * Apply a credit or debit by the rules of the account type.
+     * @param direction Way the money goes
+     * @param amount Amount
+     * @param currency Currency object
+     * @return APPLIED, or the reason the change is refused
+     */
+    private PostingStatus tryPost(final Posting.Direction direction,
+            final BigDecimal amount, final Currency currency) {
+        long minor = Postings.toMinor(amount);
+        if (minor < 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+        return tryPost(direction, minor, currency, null);
+    }
+
+    /**
+     * Take the money of a transfer across shards from this account, its
+     * source, by the rules of the account type.
+     * @param transit Transfer, that gets its journal id
+     * @return APPLIED, or the reason the debit is refused
+     */
+    final PostingStatus trySend(final Transit transit) {
+        return tryPost(Posting.Direction.DEBIT, transit.getAmount(),
+            transit.getCurrency(), transit);
+    }
+
+    /**
+     * Put the money of a transfer across shards to this account, its
+     * target, by the rules of the account type.
+     * @param transit Transfer, sent already
+     * @return APPLIED, or the reason the credit is refused
+     */
+    final PostingStatus tryReceive(final Transit transit) {
+        return tryPost(Posting.Direction.CREDIT, transit.getAmount(),
+            transit.getCurrency(), transit);
+    }
+
+    /**
+     * Apply a credit or debit in minor units by the rules of the account
+     * type.
+     * @param direction Way the money goes
+     * @param minor Amount in minor units, not negative
+     * @param currency Currency object
+     * @param transit Transfer across shards, that the change is a side
+     *     of, or null
+     * @return APPLIED, or the reason the change is refused
+     */
+    private PostingStatus tryPost(final Posting.Direction direction,
+            final long minor, final Currency currency,
+            final Transit transit) {
+        Journal journal = banking.getJournal();
+        long position;
+        synchronized (this) {
+            long balance = balanceMinor(currency);
+            // Amount is not negative, so an overflow moves the wrong way
+            long next;
+            boolean overflow;
+            if (direction == Posting.Direction.CREDIT) {
+                next = balance + minor;
+                overflow = next < balance;
+            } else {
+                next = balance - minor;
+                overflow = next > balance;
+            }
+            if (overflow) {
+                return PostingStatus.INVALID_AMOUNT;
+            }
+            PostingStatus status = AccountRules.admit(this, direction,
+                balance);
+            if (status != PostingStatus.APPLIED) {
+                return status;
+            }
+            try {
+                if (transit == null) {
+                    position = journal.post(this, direction, minor,
+                        currency);
+                } else if (direction == Posting.Direction.DEBIT) {
+                    position = journal.sent(transit);
+                } else {
+                    position = journal.settled(transit, true);
+                }
+            } catch (RuntimeException e) {
+                AccountRules.revoke(this, direction);
+                throw e;
+            }
+            setBalanceMinor(next, currency);
+        }
+        journal.sync(position);
+        return PostingStatus.APPLIED;
+    }
+
     /**
      * Transfer money to another account.
      * @param amount Amount
@@ -100,7 +270,7 @@ public abstract class Account {
      */
     public final void debit(final BigDecimal amount, final String currency,
             final Account creditAccount) {
-        debit(amount, Currency.getInstance(currency), creditAccount);
+        debit(amount, CurrencyIndex.currency(currency), creditAccount);
     }
 
     /**
@@ -112,6 +282,25 @@ public abstract class Account {
     public abstract void debit(BigDecimal amount, Currency currency,
             Account creditAccount);
 
+    /**
+     * Give the money of a transfer across shards back to this account, its
+     * source, whatever the rules of the account type, when the target
+     * refused it.
+     * @param transit Transfer, sent already
+     */
+    final void giveBack(final Transit transit) {
+        Journal journal = banking.getJournal();
+        Currency currency = transit.getCurrency();
+        long position;
+        synchronized (this) {
+            long balance = Money.add(balanceMinor(currency),
+                transit.getAmount());
+            position = journal.settled(transit, false);
+            setBalanceMinor(balance, currency);
+        }
+        journal.sync(position);
+    }
+
     /**
      * Overrides the balance on account. Use with care.
      * @param amount Amount
@@ -119,7 +308,7 @@ public abstract class Account {
      */
     protected final void setBalance(final BigDecimal amount,
             final String currency) {
-        setBalance(amount, Currency.getInstance(currency));
+        setBalance(amount, CurrencyIndex.currency(currency));
     }
 
     /**
@@ -127,12 +316,73 @@ public abstract class Account {
      * @param amount Amount
      * @param currency Currency object
      */
-    protected final void setBalance(final BigDecimal amount,
+    protected final synchronized void setBalance(final BigDecimal amount,
             final Currency currency) {
-        if (balances.containsKey(currency)) {
-            balances.remove(currency);
+        setBalanceMinor(Money.toMinor(amount.setScale(Money.SCALE,
+            BigDecimal.ROUND_HALF_UP)), currency);
+    }
+
+    /**
+     * Overrides the balance on account. Use with care.
+     *
+     * Every balance change goes through here and is published to the
+     * balance event subscribers.
+     * @param amount Amount in minor units
+     * @param currency Currency object
+     */
+    final synchronized void setBalanceMinor(final long amount,
+            final Currency currency) {
+        int ordinal = CurrencyIndex.ordinal(currency);
+        long before = balances.get(ordinal);
+        balances.set(ordinal, amount);
+        banking.getEvents().publish(this, ordinal,
+            amount - before, amount);
+    }
+
+    /**
+     * Get account balance.
+     * @param currency Currency object
+     * @return Balance amount in minor units
+     */
+    final synchronized long balanceMinor(final Currency currency) {
+        return balances.get(CurrencyIndex.ordinal(currency));
+    }
+
+    /**
+     * Add all balances to per currency sums.
+     * @param sums Sums in minor units, indexed by currency ordinal
+     */
+    final synchronized void addBalancesTo(final long[] sums) {
+        for (int i = 0; i < balances.size(); i++) {
+            int ordinal = balances.ordinalAt(i);
+            sums[ordinal] = Money.add(sums[ordinal], balances.amountAt(i));
         }
-        balances.put(currency, amount);
+    }
+
+    /**
+     * Get the balance table. The monitor must be held.
+     * @return Balances in minor units
+     */
+    final BalanceTable getBalances() {
+        return balances;
+    }
+
+    /**
+     * Get the journal position after the last change. The monitor must be
+     * held.
+     * @return Journal position, 0 if never journaled
+     */
+    final long getJournalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * Set the journal position after the last change. The monitor must be
+     * held.
+     * @param position Journal position
+     */
+    final void setJournalPosition(final long position) {
+        journalPosition = position;
     }
 
     /**
@@ -141,7 +391,7 @@ public abstract class Account {
      * @return Balance amount
      */
     public final BigDecimal balance(final String currency) {
-        return balance(Currency.getInstance(currency));
+        return balance(CurrencyIndex.currency(currency));
     }
 
     /**
@@ -149,10 +399,8 @@ public abstract class Account {
      * @param currency Currency object
      * @return Balance amount
      */
-    public final BigDecimal balance(final Currency currency) {
-        return balances
-            .getOrDefault(currency, BigDecimal.ZERO)
-            .setScale(2, BigDecimal.ROUND_HALF_UP);
+    public final synchronized BigDecimal balance(final Currency currency) {
+        return Money.toDecimal(balanceMinor(currency));
     }
 
     /**
@@ -161,7 +409,7 @@ public abstract class Account {
      * @return Balance amount
      */
     public final BigDecimal balanceAll(final String currency) {
-        return balanceAll(Currency.getInstance(currency));
+        return balanceAll(CurrencyIndex.currency(currency));
     }
 
     /**
@@ -170,11 +418,24 @@ public abstract class Account {
      * @return Balance amount
      */
     public final BigDecimal balanceAll(final Currency currency) {
+        return balanceAll(currency, Converter.getInstance().getRates());
+    }
+
+    /**
+     * Get account balance, converted with the given rates.
+     *
+     * Use this to tie the result to the rates snapshot that produced it.
+     * @param currency Currency object
+     * @param rates Rates snapshot
+     * @return Balance amount
+     */
+    public final synchronized BigDecimal balanceAll(final Currency currency,
+            final ExchangeRates rates) {
         BigDecimal balance = BigDecimal.ZERO;
-        Converter conv = Converter.getInstance();
-        for (Map.Entry<Currency, BigDecimal> entry: balances.entrySet()) {
-            BigDecimal converted = conv.convert(entry.getValue(),
-                entry.getKey(), currency);
+        for (int i = 0; i < balances.size(); i++) {
+            BigDecimal converted = rates.convert(
+                Money.toDecimal(balances.amountAt(i)),
+                CurrencyIndex.currency(balances.ordinalAt(i)), currency);
             balance = balance.add(converted);
         }
         return balance.setScale(2, BigDecimal.ROUND_HALF_UP);
@@ -189,26 +450,34 @@ public abstract class Account {
     public final void convert(final BigDecimal amount,
             final String currencyFrom, final String currencyTo) {
         Converter conv = Converter.getInstance();
-        BigDecimal balanceFrom = balance(currencyFrom);
-        if (balanceFrom.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new NoFundsException();
-        }
-        if (balanceFrom.compareTo(amount) < 0) {
-            throw new NoFundsException();
+        Journal journal = banking.getJournal();
+        Currency from = CurrencyIndex.currency(currencyFrom);
+        long position;
+        synchronized (this) {
+            long balanceFrom = balanceMinor(from);
+            if (balanceFrom <= 0) {
+                throw NoFundsException.getInstance();
+            }
+            if (amount.compareTo(Money.toDecimal(balanceFrom)) > 0) {
+                throw NoFundsException.getInstance();
+            }
+            Currency to = CurrencyIndex.currency(currencyTo);
+            // Converting validates the amount, before it is made exact
+            long converted = Money.toMinor(conv.convert(amount, from, to));
+            long taken = Money.toMinor(amount);
+            long nextFrom = Money.subtract(balanceFrom, taken);
+            long nextTo = Money.add(balanceMinor(to), converted);
+            position = journal.convert(this, from, taken, to, converted);
+            setBalanceMinor(nextFrom, from);
+            setBalanceMinor(nextTo, to);
         }
-        BigDecimal balanceTo = balance(currencyTo);
-        BigDecimal converted = conv.convert(amount,
-                Currency.getInstance(currencyFrom),
-                Currency.getInstance(currencyTo));
-        setBalance(balanceFrom.subtract(amount), currencyFrom);
-        setBalance(balanceTo.add(converted), currencyTo);
+        journal.sync(position);
     }
 
     @Override
     public final boolean equals(final Object obj) {
         if (obj instanceof Account) {
-            Account account = (Account) obj;
-            return account.toString().equals(this.toString());
+            return ((Account) obj).iban.equals(iban);
         }
         return false;
     }
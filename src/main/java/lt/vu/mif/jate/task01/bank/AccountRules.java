@@ -0,0 +1,91 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
+
+/**
+ * Rules of the account types, for operations that change balances
+ * directly rather than through credit and debit.
+ *
+ * These are the same rules credit and debit enforce: debits need a
+ * positive balance, savings accounts can not be debited, and a credit
+ * account takes one credit only.
+ */
+final class AccountRules {
+
+    /**
+     * Placeholder.
+     */
+    private AccountRules() { }
+
+    /**
+     * Check a balance change against the rules of the account type.
+     * The monitor must be held.
+     * @param account Account
+     * @param direction Way the money goes
+     * @param balance Balance before the change, in minor units
+     * @return APPLIED, or the reason the change is refused
+     */
+    static PostingStatus admit(final Account account,
+            final Posting.Direction direction, final long balance) {
+        if (direction == Posting.Direction.CREDIT) {
+            if (account instanceof CreditAccount
+                    && !((CreditAccount) account).claimCredit()) {
+                return PostingStatus.REJECTED;
+            }
+            return PostingStatus.APPLIED;
+        }
+        if (account instanceof SavingsAccount) {
+            return PostingStatus.REJECTED;
+        }
+        if (balance <= 0) {
+            return PostingStatus.NO_FUNDS;
+        }
+        return PostingStatus.APPLIED;
+    }
+
+    /**
+     * Same as admit, but throws the exception credit or debit would.
+     * The monitor must be held.
+     * @param account Account
+     * @param direction Way the money goes
+     * @param balance Balance before the change, in minor units
+     */
+    static void check(final Account account,
+            final Posting.Direction direction, final long balance) {
+        PostingStatus status = admit(account, direction, balance);
+        if (status != PostingStatus.APPLIED) {
+            throw refusal(status);
+        }
+    }
+
+    /**
+     * Get the exception credit or debit throws for a refusal.
+     * @param status Reason the change is refused
+     * @return Exception
+     */
+    static RuntimeException refusal(final PostingStatus status) {
+        switch (status) {
+            case NO_FUNDS:
+                return NoFundsException.getInstance();
+            case REJECTED:
+                return AccountActionException.getInstance();
+            default:
+                return new NumberFormatException("Invalid amount");
+        }
+    }
+
+    /**
+     * Undo what admit recorded on the account. The monitor must be held.
+     * @param account Account
+     * @param direction Way the money went
+     */
+    static void revoke(final Account account,
+            final Posting.Direction direction) {
+        if (direction == Posting.Direction.CREDIT
+                && account instanceof CreditAccount) {
+            ((CreditAccount) account).releaseCredit();
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of the banking service.
+ *
+ * Every operation runs as a task of its own on an executor and reports
+ * through a future, so a caller can keep any number of operations in
+ * flight. By default tasks run on virtual threads, one per task, where
+ * the JVM has them (Java 21 and later), and on a fixed pool of platform
+ * threads otherwise.
+ *
+ * Operations on the same account run one after another, in the order
+ * they were submitted; a transfer waits for both of its accounts. An
+ * account holds no thread while waiting, only the chain of its pending
+ * operations, which is dropped once it runs empty. A failed operation
+ * fails its own future only.
+ *
+ * A sharded facade runs operations on a {@link ShardedLedger} instead:
+ * each account belongs to a shard, whose single thread applies its
+ * operations in queue order, and transfers across shards are passed on
+ * from shard to shard. The shard thread stays the single writer of its
+ * accounts only if they are changed through the facade alone: credit,
+ * debit, transfer and balance of any accounts, an operation submitted on
+ * one account, that changes no other, and an operation on two accounts
+ * of the same shard. An operation on two accounts of different shards is
+ * refused. Synchronous calls on the accounts stay safe, under the account
+ * monitors, but are not ordered with the shards.
+ */
+public final class AsyncBanking implements AutoCloseable {
+
+    /**
+     * Lazy holder of the default executor.
+     */
+    private static final class Default {
+
+        /**
+         * Executor of facades created without one.
+         */
+        private static final Executor EXECUTOR = create();
+
+        /**
+         * Placeholder.
+         */
+        private Default() { }
+
+        /**
+         * Create the default executor.
+         * @return Virtual thread executor, or a fixed pool
+         */
+        private static Executor create() {
+            ExecutorService virtual = virtualExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            return Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                Default::newThread);
+        }
+
+        /**
+         * Create a pool thread.
+         * @param task Task of the thread
+         * @return Daemon thread
+         */
+        private static Thread newThread(final Runnable task) {
+            Thread thread = new Thread(task, "banking-async");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    /**
+     * Executor, that tasks run on, unless sharded.
+     */
+    private final Executor executor;
+
+    /**
+     * Ledger, that runs operations if sharded, or null.
+     */
+    private final ShardedLedger ledger;
+
+    /**
+     * Last pending operation of every account, that has any.
+     */
+    private final ConcurrentMap<Account, CompletableFuture<Boolean>> tails =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Lock, that makes queuing on two accounts atomic.
+     *
+     * Without it two opposite transfers could each queue behind the other
+     * on one of their accounts and wait forever.
+     */
+    private final Object pairLock = new Object();
+
+    /**
+     * Constructor.
+     * @param a Executor, that tasks run on
+     */
+    AsyncBanking(final Executor a) {
+        this(a, null);
+    }
+
+    /**
+     * Constructor of a sharded facade.
+     * @param a Ledger, that runs operations
+     */
+    AsyncBanking(final ShardedLedger a) {
+        this(Runnable::run, a);
+    }
+
+    /**
+     * Constructor.
+     * @param a Executor, that tasks run on, unless sharded
+     * @param b Ledger, that runs operations, or null
+     */
+    private AsyncBanking(final Executor a, final ShardedLedger b) {
+        this.executor = a;
+        this.ledger = b;
+    }
+
+    /**
+     * Get the executor of facades created without one.
+     * @return Virtual thread executor, or a fixed pool
+     */
+    static Executor defaultExecutor() {
+        return Default.EXECUTOR;
+    }
+
+    /**
+     * Create an executor, that starts a virtual thread per task.
+     * @return Executor, or null if the JVM has no virtual threads
+     */
+    static ExecutorService virtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Credit an account.
+     * @param account Account
+     * @param amount Amount
+     * @param currency Currency object
+     * @return Future, that completes once credited
+     */
+    public CompletableFuture<Void> creditAsync(final Account account,
+            final BigDecimal amount, final Currency currency) {
+        return submit(account, () -> {
+            account.credit(amount, currency);
+            return null;
+        });
+    }
+
+    /**
+     * Debit an account.
+     * @param account Account
+     * @param amount Amount
+     * @param currency Currency object
+     * @return Future, that completes once debited, or with the exception
+     *     debit throws
+     */
+    public CompletableFuture<Void> debitAsync(final Account account,
+            final BigDecimal amount, final Currency currency) {
+        return submit(account, () -> {
+            account.debit(amount, currency);
+            return null;
+        });
+    }
+
+    /**
+     * Transfer money between accounts.
+     * @param debitAccount Source account
+     * @param creditAccount Target account
+     * @param amount Amount
+     * @param currency Currency object
+     * @return Future, that completes once transferred, or with the
+     *     exception the transfer throws
+     */
+    public CompletableFuture<Void> transferAsync(final Account debitAccount,
+            final Account creditAccount, final BigDecimal amount,
+            final Currency currency) {
+        if (ledger != null) {
+            return ledger.transfer(debitAccount, creditAccount, amount,
+                currency);
+        }
+        return submit(debitAccount, creditAccount, () -> {
+            debitAccount.debit(amount, currency, creditAccount);
+            return null;
+        });
+    }
+
+    /**
+     * Get a balance, after the operations submitted before on the account.
+     * @param account Account
+     * @param currency Currency object
+     * @return Future of the balance
+     */
+    public CompletableFuture<BigDecimal> balanceAsync(final Account account,
+            final Currency currency) {
+        return submit(account, () -> account.balance(currency));
+    }
+
+    /**
+     * Run an operation on an account, after the ones submitted before it.
+     * On a sharded facade, the operation must change no other account.
+     * @param <T> Result type
+     * @param account Account
+     * @param operation Operation
+     * @return Future of the result
+     */
+    public <T> CompletableFuture<T> submit(final Account account,
+            final Supplier<T> operation) {
+        if (ledger != null) {
+            return ledger.submit(account, operation);
+        }
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        CompletableFuture<?> before = tails.put(account, done);
+        return run(before, operation, done, account, account);
+    }
+
+    /**
+     * Run an operation on two accounts, after the ones submitted before it
+     * on either of them.
+     *
+     * A sharded facade runs it on the shard of both accounts, and refuses
+     * it if they belong to different shards; a transfer across shards is
+     * what {@link #transferAsync} is for.
+     * @param <T> Result type
+     * @param first Account
+     * @param second Other account, may be the same
+     * @param operation Operation
+     * @return Future of the result
+     * @throws UnsupportedOperationException Sharded facade, and the
+     *     accounts belong to different shards
+     */
+    public <T> CompletableFuture<T> submit(final Account first,
+            final Account second, final Supplier<T> operation) {
+        if (ledger != null && !ledger.sameShard(first, second)) {
+            throw new UnsupportedOperationException(
+                "Accounts of different ledger shards");
+        }
+        if (first.equals(second) || ledger != null) {
+            return submit(first, operation);
+        }
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        CompletableFuture<?> before;
+        synchronized (pairLock) {
+            before = both(tails.put(first, done), tails.put(second, done));
+        }
+        return run(before, operation, done, first, second);
+    }
+
+    /**
+     * Stop the shards of a sharded facade, once the operations submitted
+     * are finished. Does nothing for a facade on an executor.
+     *
+     * If interrupted while waiting, returns with the interrupt status set;
+     * the shards still stop once they are done.
+     */
+    @Override
+    public void close() {
+        if (ledger == null) {
+            return;
+        }
+        try {
+            ledger.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Combine the pending operations of two accounts.
+     * @param a Pending operation, or null
+     * @param b Pending operation, or null
+     * @return Future, that completes after both, or null if none
+     */
+    private static CompletableFuture<?> both(final CompletableFuture<?> a,
+            final CompletableFuture<?> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return CompletableFuture.allOf(a, b);
+    }
+
+    /**
+     * Run an operation once the ones before it are done.
+     * @param <T> Result type
+     * @param before Pending operations, or null
+     * @param operation Operation
+     * @param done Completed, whatever the outcome, once the operation ran
+     * @param first Account, that the operation is queued on
+     * @param second Other account, that the operation is queued on
+     * @return Future of the result
+     */
+    private <T> CompletableFuture<T> run(
+            final CompletableFuture<?> before, final Supplier<T> operation,
+            final CompletableFuture<Boolean> done, final Account first,
+            final Account second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> start = before;
+        if (start == null) {
+            start = CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        start.thenRunAsync(() -> {
+            try {
+                result.complete(operation.get());
+            } finally {
+                release(done, first, second);
+            }
+        }, executor).whenComplete((ignored, e) -> {
+            // The operation threw, or the executor refused to run it
+            if (e != null) {
+                release(done, first, second);
+                result.completeExceptionally(e.getCause());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Let the next operations of the accounts run.
+     * @param done Operation, that ran
+     * @param first Account, that the operation is queued on
+     * @param second Other account, that the operation is queued on
+     */
+    private void release(final CompletableFuture<Boolean> done,
+            final Account first, final Account second) {
+        tails.remove(first, done);
+        tails.remove(second, done);
+        done.complete(Boolean.TRUE);
+    }
+
+}
@@ -0,0 +1,97 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Balance change of an account.
+ *
+ * The same instance is filled in for every event of a subscription, so it
+ * is only valid while the listener is called; copy what is needed.
+ */
+public final class BalanceEvent {
+
+    /**
+     * Sequence number, increasing by one with every published change.
+     */
+    @Getter
+    private long sequence;
+
+    /**
+     * Normalized IBAN of the account, that changed.
+     */
+    @Getter
+    private String iban;
+
+    /**
+     * Currency ordinal.
+     */
+    private int currency;
+
+    /**
+     * Change in minor units.
+     */
+    @Getter
+    private long deltaMinor;
+
+    /**
+     * New balance in minor units.
+     */
+    @Getter
+    private long balanceMinor;
+
+    /**
+     * Constructor.
+     */
+    BalanceEvent() { }
+
+    /**
+     * Fill in the event.
+     * @param a Sequence number
+     * @param b IBAN of the account
+     * @param c Currency ordinal
+     * @param d Change in minor units
+     * @param e New balance in minor units
+     */
+    void set(final long a, final String b, final int c, final long d,
+            final long e) {
+        this.sequence = a;
+        this.iban = b;
+        this.currency = c;
+        this.deltaMinor = d;
+        this.balanceMinor = e;
+    }
+
+    /**
+     * Get the currency.
+     * @return Currency object
+     */
+    public Currency getCurrency() {
+        return CurrencyIndex.currency(currency);
+    }
+
+    /**
+     * Get the change.
+     * @return Amount, negative if the balance went down
+     */
+    public BigDecimal getDelta() {
+        return Money.toDecimal(deltaMinor);
+    }
+
+    /**
+     * Get the new balance.
+     * @return Amount
+     */
+    public BigDecimal getBalance() {
+        return Money.toDecimal(balanceMinor);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + iban + " " + getDelta() + " "
+            + getCurrency() + " = " + getBalance();
+    }
+
+}
@@ -0,0 +1,23 @@
+package lt.vu.mif.jate.task01.bank;
+
+/**
+ * Listener of balance change events.
+ *
+ * Called on the subscription's own thread, one event at a time, in
+ * sequence order.
+ */
+@FunctionalInterface
+public interface BalanceListener {
+
+    /**
+     * Receive an event.
+     * @param event Event, only valid until this method returns
+     */
+    void onEvent(BalanceEvent event);
+
+    /**
+     * Called after the last event of a batch, a good time to flush.
+     */
+    default void onBatchEnd() { }
+
+}
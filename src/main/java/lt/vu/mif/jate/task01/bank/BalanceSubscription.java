@@ -0,0 +1,155 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription to balance change events.
+ *
+ * Events are handed to the listener on a thread of the subscription's
+ * own, so a slow listener never holds up balance changes; if it falls a
+ * whole ring behind, the events it missed are counted as lost.
+ */
+public final class BalanceSubscription {
+
+    /**
+     * Ring the events come from.
+     */
+    private final EventRing ring;
+
+    /**
+     * Listener.
+     */
+    private final BalanceListener listener;
+
+    /**
+     * Next sequence number to deliver, owned by the subscriber thread.
+     */
+    private long position;
+
+    /**
+     * Number of events overwritten before they were delivered.
+     */
+    private final AtomicLong lost = new AtomicLong();
+
+    /**
+     * Whether the subscription is open.
+     */
+    private volatile boolean open = true;
+
+    /**
+     * Subscriber thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Constructor.
+     * @param a Ring the events come from
+     * @param b Listener
+     * @param c First sequence number to deliver
+     */
+    BalanceSubscription(final EventRing a, final BalanceListener b,
+            final long c) {
+        this.ring = a;
+        this.listener = b;
+        this.position = c;
+        this.thread = new Thread(this::run, "balance-events");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the subscriber thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Deliver events until the subscription is closed.
+     */
+    void run() {
+        BalanceEvent event = new BalanceEvent();
+        int idle = 0;
+        while (open) {
+            if (ring.poll(this, event)) {
+                idle = 0;
+            } else {
+                EventRing.idle(idle++);
+            }
+        }
+    }
+
+    /**
+     * Get the next sequence number to deliver.
+     * @return Sequence number
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Set the next sequence number to deliver.
+     * @param p Sequence number
+     */
+    void setPosition(final long p) {
+        position = p;
+    }
+
+    /**
+     * Count events overwritten before they were delivered.
+     * @param count Number of events
+     */
+    void lose(final long count) {
+        lost.addAndGet(count);
+    }
+
+    /**
+     * Hand an event to the listener.
+     * @param event Event
+     */
+    void deliver(final BalanceEvent event) {
+        try {
+            listener.onEvent(event);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tell the listener, that a batch is over.
+     */
+    void endBatch() {
+        try {
+            listener.onBatchEnd();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the number of events overwritten before they were delivered.
+     * @return Number of lost events
+     */
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * Stop delivering events and wait for the subscriber thread to end.
+     *
+     * Does nothing if the subscription is closed already.
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        ring.unsubscribe();
+        if (thread != Thread.currentThread()) {
+            thread.join();
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.Arrays;
+
+/**
+ * Compact per-account balance store, keyed by currency ordinal.
+ *
+ * Most accounts hold one or two currencies, so the first two balances are
+ * kept inline in fields. Any further balances go to a pair of parallel
+ * arrays, sorted by ordinal. Amounts are in minor units.
+ *
+ * Not thread safe, guarded by the owning account's monitor.
+ */
+final class BalanceTable {
+
+    /**
+     * Ordinal of an unused inline slot.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Initial capacity of the overflow arrays.
+     */
+    private static final int OVERFLOW_CAPACITY = 4;
+
+    /**
+     * Ordinal in the first inline slot.
+     */
+    private int ordinal0 = EMPTY;
+
+    /**
+     * Amount in the first inline slot.
+     */
+    private long amount0;
+
+    /**
+     * Ordinal in the second inline slot.
+     */
+    private int ordinal1 = EMPTY;
+
+    /**
+     * Amount in the second inline slot.
+     */
+    private long amount1;
+
+    /**
+     * Shared empty overflow ordinals.
+     */
+    private static final int[] NO_ORDINALS = new int[0];
+
+    /**
+     * Shared empty overflow amounts.
+     */
+    private static final long[] NO_AMOUNTS = new long[0];
+
+    /**
+     * Overflow ordinals, sorted.
+     */
+    private int[] ordinals = NO_ORDINALS;
+
+    /**
+     * Overflow amounts, parallel to ordinals.
+     */
+    private long[] amounts = NO_AMOUNTS;
+
+    /**
+     * Number of used overflow entries.
+     */
+    private int overflow;
+
+    /**
+     * Get a balance.
+     * @param ordinal Currency ordinal
+     * @return Amount in minor units, zero if there is no balance
+     */
+    long get(final int ordinal) {
+        if (ordinal0 == ordinal) {
+            return amount0;
+        }
+        if (ordinal1 == ordinal) {
+            return amount1;
+        }
+        if (overflow == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(ordinals, 0, overflow, ordinal);
+        if (index < 0) {
+            return 0;
+        }
+        return amounts[index];
+    }
+
+    /**
+     * Set a balance.
+     * @param ordinal Currency ordinal
+     * @param amount Amount in minor units
+     */
+    void set(final int ordinal, final long amount) {
+        if (ordinal0 == ordinal || ordinal0 == EMPTY) {
+            ordinal0 = ordinal;
+            amount0 = amount;
+            return;
+        }
+        if (ordinal1 == ordinal || ordinal1 == EMPTY) {
+            ordinal1 = ordinal;
+            amount1 = amount;
+            return;
+        }
+        int index = Arrays.binarySearch(ordinals, 0, overflow, ordinal);
+        if (index >= 0) {
+            amounts[index] = amount;
+            return;
+        }
+        index = -index - 1;
+        if (overflow == ordinals.length) {
+            int capacity = Math.max(OVERFLOW_CAPACITY, overflow * 2);
+            ordinals = Arrays.copyOf(ordinals, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        System.arraycopy(ordinals, index, ordinals, index + 1,
+            overflow - index);
+        System.arraycopy(amounts, index, amounts, index + 1,
+            overflow - index);
+        ordinals[index] = ordinal;
+        amounts[index] = amount;
+        overflow++;
+    }
+
+    /**
+     * Get the number of balances.
+     * @return Number of balances
+     */
+    int size() {
+        int size = overflow;
+        if (ordinal0 != EMPTY) {
+            size++;
+        }
+        if (ordinal1 != EMPTY) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Get the currency ordinal of the n-th balance.
+     * @param index Index between zero and size
+     * @return Currency ordinal
+     */
+    int ordinalAt(final int index) {
+        if (index == 0) {
+            return ordinal0;
+        }
+        if (index == 1) {
+            return ordinal1;
+        }
+        return ordinals[index - 2];
+    }
+
+    /**
+     * Get the amount of the n-th balance.
+     * @param index Index between zero and size
+     * @return Amount in minor units
+     */
+    long amountAt(final int index) {
+        if (index == 0) {
+            return amount0;
+        }
+        if (index == 1) {
+            return amount1;
+        }
+        return amounts[index - 2];
+    }
+
+}
@@ -81,7 +81,7 @@ public class Bank {
      */
     public Bank(@NonNull final String a, @NonNull final Integer b,
             final String c, final String d, final String e) {
-        this.locale = new Locale(a, a);
+        this.locale = Countries.locale(a);
         this.code = b;
         this.bicCode = c;
         this.name = d;
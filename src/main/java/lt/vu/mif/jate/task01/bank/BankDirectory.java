@@ -0,0 +1,335 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Directory of banks of all countries.
+ *
+ * Banks are kept in an open addressing table keyed by country and code,
+ * packed into a single long, so a lookup is one probe sequence over one
+ * array and allocates nothing. Secondary indexes find banks by BIC and by
+ * the beginning of their name.
+ *
+ * Lookups take no lock. Banks are never removed, so a reader either sees
+ * a bank or the slot it is about to go to is still empty. Adding banks is
+ * serialized; a growing table is built aside and swapped in whole.
+ */
+final class BankDirectory {
+
+    /**
+     * Bits of a bank code in a packed key.
+     */
+    private static final long CODE_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Key of banks, that can not be in the directory.
+     */
+    private static final long NO_KEY = -1;
+
+    /**
+     * Multiplier, that spreads key bits over the hash (golden ratio).
+     */
+    private static final long SPREAD = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Initial number of table slots.
+     */
+    private static final int CAPACITY = 64;
+
+    /**
+     * Offset of the country code in a BIC.
+     */
+    private static final int BIC_COUNTRY = 4;
+
+    /**
+     * Length of a full BIC.
+     */
+    private static final int BIC_LENGTH = 11;
+
+    /**
+     * Branch code of a BIC without one.
+     */
+    private static final String PRIMARY_OFFICE = "XXX";
+
+    /**
+     * Separates the name from the key in name index entries.
+     */
+    private static final char NAME_END = '\u0000';
+
+    /**
+     * Bank with its packed key.
+     */
+    private static final class Entry {
+
+        /**
+         * Packed country and code.
+         */
+        private final long key;
+
+        /**
+         * Bank.
+         */
+        private final Bank bank;
+
+        /**
+         * Constructor.
+         * @param k Packed country and code
+         * @param b Bank
+         */
+        Entry(final long k, final Bank b) {
+            this.key = k;
+            this.bank = b;
+        }
+
+    }
+
+    /**
+     * Slots, a power of two, at most half full.
+     */
+    private volatile AtomicReferenceArray<Entry> table =
+        new AtomicReferenceArray<>(CAPACITY);
+
+    /**
+     * Number of banks, guarded by the directory monitor.
+     */
+    private int size;
+
+    /**
+     * Banks by BIC, eleven characters long.
+     */
+    private final ConcurrentMap<String, Bank> byBic =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Banks by lower case name, followed by their key.
+     */
+    private final ConcurrentNavigableMap<String, Bank> byName =
+        new ConcurrentSkipListMap<>();
+
+    /**
+     * Pack a country and a bank code into a key.
+     * @param country Two letter country code, any case
+     * @param code Bank code
+     * @return Key, or NO_KEY if the country is not two letters
+     */
+    static long key(final String country, final int code) {
+        int ordinal = Countries.ordinal(country);
+        if (ordinal < 0) {
+            return NO_KEY;
+        }
+        return (long) ordinal << Integer.SIZE | code & CODE_MASK;
+    }
+
+    /**
+     * Get the country a BIC belongs to.
+     * @param bic BIC
+     * @return Two letter country code, or null if the BIC is too short
+     */
+    static String countryOf(final String bic) {
+        if (bic == null || bic.length() < BIC_COUNTRY + 2) {
+            return null;
+        }
+        return bic.substring(BIC_COUNTRY, BIC_COUNTRY + 2)
+            .toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Bring a BIC to its eleven character form.
+     * @param bic BIC, with or without branch code
+     * @return Upper case BIC
+     */
+    private static String normalizeBic(final String bic) {
+        String normalized = bic.trim().toUpperCase(Locale.ROOT);
+        if (normalized.length() == BIC_LENGTH - PRIMARY_OFFICE.length()) {
+            return normalized + PRIMARY_OFFICE;
+        }
+        return normalized;
+    }
+
+    /**
+     * Spread the bits of a key.
+     * @param key Key
+     * @return Hash
+     */
+    private static int hash(final long key) {
+        long h = key * SPREAD;
+        return (int) (h ^ h >>> Integer.SIZE);
+    }
+
+    /**
+     * Find a bank.
+     * @param country Country code
+     * @param code Bank code
+     * @return Bank, or null if there is none
+     */
+    Bank get(final String country, final int code) {
+        long key = key(country, code);
+        if (key == NO_KEY) {
+            return null;
+        }
+        return get(table, key);
+    }
+
+    /**
+     * Find a bank in a table.
+     * @param slots Table
+     * @param key Packed key
+     * @return Bank, or null if there is none
+     */
+    private static Bank get(final AtomicReferenceArray<Entry> slots,
+            final long key) {
+        int mask = slots.length() - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            Entry entry = slots.get(i);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.key == key) {
+                return entry.bank;
+            }
+        }
+    }
+
+    /**
+     * Find a bank or add one without details.
+     * @param country Country code
+     * @param code Bank code
+     * @return Bank, the same instance for every caller
+     */
+    Bank getOrCreate(final String country, final int code) {
+        Bank bank = get(country, code);
+        if (bank != null) {
+            return bank;
+        }
+        return putIfAbsent(new Bank(country, code));
+    }
+
+    /**
+     * Add a bank, unless one with the same country and code exists.
+     * @param bank Bank
+     * @return Bank in the directory
+     * @throws IllegalArgumentException Country is not two letters
+     */
+    synchronized Bank putIfAbsent(final Bank bank) {
+        long key = key(bank.getLocale().getCountry(), bank.getCode());
+        if (key == NO_KEY) {
+            throw new IllegalArgumentException("Bad country of " + bank);
+        }
+        AtomicReferenceArray<Entry> slots = table;
+        Bank known = get(slots, key);
+        if (known != null) {
+            return known;
+        }
+        if (2 * (size + 1) > slots.length()) {
+            slots = grow(slots);
+        }
+        insert(slots, new Entry(key, bank));
+        table = slots;
+        size++;
+        // The first bank of a BIC keeps it, indexes change under the lock
+        if (bank.getBicCode() != null) {
+            String bic = normalizeBic(bank.getBicCode());
+            if (!byBic.containsKey(bic)) {
+                byBic.put(bic, bank);
+            }
+        }
+        if (bank.getName() != null) {
+            byName.put(bank.getName().toLowerCase(Locale.ROOT) + NAME_END
+                + key, bank);
+        }
+        return bank;
+    }
+
+    /**
+     * Build a table twice as large.
+     * @param slots Current table
+     * @return New table, not published yet
+     */
+    private static AtomicReferenceArray<Entry> grow(
+            final AtomicReferenceArray<Entry> slots) {
+        AtomicReferenceArray<Entry> larger =
+            new AtomicReferenceArray<>(slots.length() * 2);
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null) {
+                insert(larger, entry);
+            }
+        }
+        return larger;
+    }
+
+    /**
+     * Put an entry to the first free slot of its probe sequence.
+     * @param slots Table
+     * @param entry Entry
+     */
+    private static void insert(final AtomicReferenceArray<Entry> slots,
+            final Entry entry) {
+        int mask = slots.length() - 1;
+        int i = hash(entry.key) & mask;
+        while (slots.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        slots.set(i, entry);
+    }
+
+    /**
+     * Find a bank by BIC.
+     * @param bic BIC, with or without branch code
+     * @return Bank, or null if there is none
+     */
+    Bank getByBic(final String bic) {
+        return byBic.get(normalizeBic(bic));
+    }
+
+    /**
+     * Find banks by the beginning of their name, ignoring case.
+     * @param prefix Beginning of the name
+     * @return Banks in name order
+     */
+    List<Bank> getByNamePrefix(final String prefix) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        return new ArrayList<>(byName.subMap(from, true,
+            from + Character.MAX_VALUE, false).values());
+    }
+
+    /**
+     * Get all banks.
+     * @return Banks
+     */
+    Collection<Bank> all() {
+        AtomicReferenceArray<Entry> slots = table;
+        List<Bank> banks = new ArrayList<>();
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null) {
+                banks.add(entry.bank);
+            }
+        }
+        return banks;
+    }
+
+    /**
+     * Get all banks, grouped by country and keyed by code.
+     * @return Bank map, a copy
+     */
+    Map<String, Map<Integer, Bank>> byCountry() {
+        Map<String, Map<Integer, Bank>> banks = new HashMap<>();
+        for (Bank bank: all()) {
+            banks.computeIfAbsent(bank.getLocale().getCountry(),
+                k -> new HashMap<>()).put(bank.getCode(), bank);
+        }
+        return banks;
+    }
+
+}
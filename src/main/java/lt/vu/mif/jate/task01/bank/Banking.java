@@ -4,9 +4,21 @@ import lt.vu.mif.jate.task01.bank.exception.BankNotFoundException;
 import lt.vu.mif.jate.task01.bank.exception.IBANException;
 import lt.vu.mif.jate.task01.bank.exception.WrongAccountTypeException;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Banking service.
@@ -14,30 +26,99 @@ import java.util.Map;
 public class Banking {
 
     /**
-     * Banking service instance.
+     * Lazy holder of the service instance.
+     *
+     * The JVM initializes it once, on first access, so getInstance needs
+     * no locking.
      */
-    private static Banking instance;
+    private static final class Holder {
+
+        /**
+         * Banking service instance.
+         */
+        private static final Banking INSTANCE = new Banking();
+
+        /**
+         * Placeholder.
+         */
+        private Holder() { }
+
+    }
 
     /**
      * Retrieve service instance.
      * @return Instance
      */
-    public static synchronized Banking getInstance() {
-        if (instance == null) {
-            instance = new Banking();
-        }
-        return instance;
+    public static Banking getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
-     * Map, holding banks, nested into separate maps for each country code.
+     * Create a service instance of its own, with accounts, banks and a
+     * journal apart from the shared instance.
+     * @param verifyChecksum Whether IBAN check digits of new accounts are
+     *     verified
+     * @return New service instance
+     */
+    public static Banking create(final boolean verifyChecksum) {
+        return new Banking(Integer.getInteger(SHARDS_PROPERTY, 0),
+            verifyChecksum);
+    }
+
+    /**
+     * Directory of banks of all countries.
+     */
+    private final BankDirectory banks = new BankDirectory();
+
+    /**
+     * Map, holding all bank accounts, keyed by normalized IBAN.
+     *
+     * Reads are lock-free, creation is atomic per IBAN.
+     */
+    private final ConcurrentMap<String, Account> accounts =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Journal, that balance changes are recorded to.
      */
-    private Map<String, Map<Integer, Bank>> banks = new HashMap<>();
+    private volatile Journal journal = Journal.NONE;
 
     /**
-     * Map, holding all bank accounts.
+     * System property, that sets the number of ledger shards of the
+     * service instance.
      */
-    private Map<String, Account> accounts = new HashMap<>();
+    public static final String SHARDS_PROPERTY =
+        "lt.vu.mif.jate.task01.bank.shards";
+
+    /**
+     * System property, that turns IBAN check digit verification of the
+     * service instance on.
+     */
+    public static final String VERIFY_CHECKSUM_PROPERTY =
+        "lt.vu.mif.jate.task01.bank.verifyChecksum";
+
+    /**
+     * Asynchronous facade.
+     */
+    private final AsyncBanking async;
+
+    /**
+     * Whether IBAN check digits of new accounts are verified.
+     *
+     * Off by default, as existing account numbers are not guaranteed to
+     * carry valid check digits.
+     */
+    private final boolean verifyChecksum;
+
+    /**
+     * Number of balance change events kept for slow subscribers.
+     */
+    private static final int EVENT_RING = 65536;
+
+    /**
+     * Balance change events.
+     */
+    private final EventRing events = new EventRing(EVENT_RING);
 
     /**
      * A magic number that defies human intelligence.
@@ -45,20 +126,78 @@ public class Banking {
     private static final int HOCUS_POCUS = 3;
 
     /**
-     * Constructor.
+     * Constructor, with the number of ledger shards from the system
+     * property {@value #SHARDS_PROPERTY}, and checksum verification from
+     * {@value #VERIFY_CHECKSUM_PROPERTY}.
      */
     Banking() {
-        // Pre-define locales in banks
-        Map<Integer, Bank> banksLt = new HashMap<>();
-        banks.put("LT", banksLt);
-        // Read banks from file
-        ArrayList<String[]> lines = Util.readResourceFileCSV(
-            "banking/banks.txt", ":");
-        for (String[] line: lines) {
-            int code = Integer.parseInt(line[HOCUS_POCUS]);
-            Bank bank = new Bank("LT", code, line[2], line[0], line[1]);
-            banksLt.put(code, bank);
+        this(Integer.getInteger(SHARDS_PROPERTY, 0));
+    }
+
+    /**
+     * Constructor, with checksum verification from the system property
+     * {@value #VERIFY_CHECKSUM_PROPERTY}.
+     * @param shards Number of ledger shards of the asynchronous facade,
+     *     0 to run it on the default executor
+     */
+    Banking(final int shards) {
+        this(shards, Boolean.getBoolean(VERIFY_CHECKSUM_PROPERTY));
+    }
+
+    /**
+     * Constructor.
+     * @param shards Number of ledger shards of the asynchronous facade,
+     *     0 to run it on the default executor
+     * @param verify Whether IBAN check digits of new accounts are verified
+     */
+    Banking(final int shards, final boolean verify) {
+        this.verifyChecksum = verify;
+        // Read banks of all countries from file
+        Util.readResource("banking/banks.txt", ':', this::addBank);
+        if (shards > 0) {
+            async = new AsyncBanking(new ShardedLedger(shards));
+        } else {
+            async = new AsyncBanking(AsyncBanking.defaultExecutor());
+        }
+    }
+
+    /**
+     * Add a bank from a bank directory record, unless it is known already.
+     *
+     * A record is "name:address:BIC:bank code", the country is taken from
+     * the BIC.
+     * @param line Record
+     * @return Whether the bank was added
+     */
+    private boolean addBank(final Records.Fields line) {
+        String bic = line.get(2);
+        String country = BankDirectory.countryOf(bic);
+        if (country == null) {
+            return false;
         }
+        Bank bank = new Bank(country, line.getInt(HOCUS_POCUS), bic,
+            line.get(0), line.get(1));
+        return banks.putIfAbsent(bank) == bank;
+    }
+
+    /**
+     * Load a bank directory file.
+     *
+     * Records are "name:address:BIC:bank code", the country is taken from
+     * the BIC. Banks already known, loaded or created for an account, are
+     * kept as they are.
+     * @param file Path to the file
+     * @return Number of banks added
+     * @throws IOException File can not be read
+     */
+    public final int loadBanks(final Path file) throws IOException {
+        int[] added = new int[1];
+        Records.read(file, ':', line -> {
+            if (addBank(line)) {
+                added[0]++;
+            }
+        });
+        return added[0];
     }
 
     /**
@@ -66,11 +205,7 @@ public class Banking {
      * @return Bank map
      */
     public final Map<String, Map<Integer, Bank>> getBanks() {
-        Map<String, Map<Integer, Bank>> copy = new HashMap<>();
-        for (Map.Entry<String, Map<Integer, Bank>> entry: banks.entrySet()) {
-            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
-        }
-        return copy;
+        return banks.byCountry();
     }
 
     /**
@@ -82,16 +217,31 @@ public class Banking {
      */
     public final Bank getBank(final String country, final Integer code)
             throws BankNotFoundException {
-        if (!banks.containsKey(country)) {
-            throw new BankNotFoundException(country, code);
-        }
-        Bank bank = banks.get(country).get(code);
+        Bank bank = banks.get(country, code);
         if (bank == null) {
             throw new BankNotFoundException(country, code);
         }
         return bank;
     }
 
+    /**
+     * Find a bank by its BIC.
+     * @param bic BIC, eight or eleven characters
+     * @return Bank, or null if there is none
+     */
+    public final Bank findBankByBic(final String bic) {
+        return banks.getByBic(bic);
+    }
+
+    /**
+     * Find banks, whose name begins with the given text, ignoring case.
+     * @param prefix Beginning of the name
+     * @return Banks in name order
+     */
+    public final List<Bank> findBanksByName(final String prefix) {
+        return banks.getByNamePrefix(prefix);
+    }
+
     /**
      * Same as getBank, but instead of throwing an exception, creates the
      * bank if it doesn't exist.
@@ -100,14 +250,83 @@ public class Banking {
      * @return Bank object
      */
     final Bank getBankOrCreate(final String country, final Integer code) {
-        try {
-            return getBank(country, code);
-        } catch (BankNotFoundException e) {
-            Bank bank = new Bank(country, code);
-            banks.putIfAbsent(country, new HashMap<>());
-            banks.get(country).put(code, bank);
-            return bank;
+        return banks.getOrCreate(country, code);
+    }
+
+    /**
+     * Register a bank, unless one with the same country and code exists.
+     * @param bank Bank
+     * @return Registered bank
+     */
+    final Bank restoreBank(final Bank bank) {
+        return banks.putIfAbsent(bank);
+    }
+
+    /**
+     * Register an account, that is already built, without journaling it.
+     * @param account Account
+     * @return Whether it was registered, false if the IBAN is taken
+     */
+    final boolean restoreAccount(final Account account) {
+        return accounts.putIfAbsent(account.toString(), account) == null;
+    }
+
+    /**
+     * Account constructor reference, that takes a parsed IBAN, its bank and
+     * the service it belongs to.
+     * @param <T> Account type
+     */
+    @FunctionalInterface
+    private interface AccountFactory<T extends Account> {
+
+        /**
+         * Create a new account.
+         * @param iban Parsed IBAN
+         * @param bank Bank of the account
+         * @param banking Banking service, that the account belongs to
+         * @return Account
+         */
+        T create(IBAN iban, Bank bank, Banking banking);
+
+    }
+
+    /**
+     * Get an existing account of the given type or atomically create it.
+     *
+     * The IBAN is validated first. The account, and its bank if missing,
+     * is then built, journaled and registered in one step per IBAN, so when
+     * two threads race to create the same account only one is built.
+     * @param <T> Account type
+     * @param iban IBAN number
+     * @param type Account class
+     * @param factory Account constructor
+     * @return Account
+     * @throws IBANException Wrong IBAN
+     * @throws WrongAccountTypeException Account exists and has other type
+     */
+    private <T extends Account> T getAccount(final String iban,
+            final Class<T> type, final AccountFactory<T> factory)
+            throws IBANException, WrongAccountTypeException {
+        String normalized = IBANParser.normalize(iban);
+        Account account = accounts.get(normalized);
+        if (account == null) {
+            IBAN parsed = IBANParser.parse(normalized, verifyChecksum);
+            Journal current = journal;
+            long[] position = new long[1];
+            // Journal the opening before anyone else can see the account
+            account = accounts.computeIfAbsent(normalized, k -> {
+                T created = factory.create(parsed, getBankOrCreate(
+                    parsed.getCountry(), parsed.getBankCode()), this);
+                position[0] = current.open(created);
+                return created;
+            });
+            current.sync(position[0]);
         }
+        if (!type.isInstance(account)) {
+            throw new WrongAccountTypeException("Account type was "
+                + account.getClass().getSimpleName());
+        }
+        return type.cast(account);
     }
 
     /**
@@ -119,18 +338,7 @@ public class Banking {
      */
     public final CurrentAccount getCurrentAccount(final String iban)
             throws IBANException, WrongAccountTypeException {
-        String normalized = IBANParser.normalize(iban);
-        if (accounts.containsKey(normalized)) {
-            Account account = accounts.get(normalized);
-            if (!(account instanceof CurrentAccount)) {
-                throw new WrongAccountTypeException("Account type was "
-                    + account.getClass().getSimpleName());
-            }
-            return (CurrentAccount) account;
-        }
-        CurrentAccount account = new CurrentAccount(normalized);
-        accounts.put(normalized, account);
-        return account;
+        return getAccount(iban, CurrentAccount.class, CurrentAccount::new);
     }
 
     /**
@@ -142,18 +350,7 @@ public class Banking {
      */
     public final CreditAccount getCreditAccount(final String iban)
             throws IBANException, WrongAccountTypeException {
-        String normalized = IBANParser.normalize(iban);
-        if (accounts.containsKey(normalized)) {
-            Account account = accounts.get(normalized);
-            if (!(account instanceof CreditAccount)) {
-                throw new WrongAccountTypeException("Account type was "
-                    + account.getClass().getSimpleName());
-            }
-            return (CreditAccount) account;
-        }
-        CreditAccount account = new CreditAccount(normalized);
-        accounts.put(normalized, account);
-        return account;
+        return getAccount(iban, CreditAccount.class, CreditAccount::new);
     }
 
     /**
@@ -165,18 +362,266 @@ public class Banking {
      */
     public final SavingsAccount getSavingsAccount(final String iban)
             throws IBANException, WrongAccountTypeException {
-        String normalized = IBANParser.normalize(iban);
-        if (accounts.containsKey(normalized)) {
-            Account account = accounts.get(normalized);
-            if (!(account instanceof SavingsAccount)) {
-                throw new WrongAccountTypeException("Account type was "
-                    + account.getClass().getSimpleName());
+        return getAccount(iban, SavingsAccount.class, SavingsAccount::new);
+    }
+
+    /**
+     * Get the journal, that balance changes are recorded to.
+     * @return Journal, records nothing if none is open
+     */
+    final Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Get the balance change events.
+     * @return Event ring
+     */
+    final EventRing getEvents() {
+        return events;
+    }
+
+    /**
+     * Subscribe to balance changes.
+     *
+     * Every change of every balance from now on, by credits, debits,
+     * transfers, conversions, postings or journal replay, is handed to the
+     * listener on a thread of the subscription's own. Changes never wait
+     * for listeners; a listener more than 65536 events behind loses the
+     * oldest ones, see {@link BalanceSubscription#getLost()}.
+     * @param listener Listener
+     * @return Subscription, to be closed when no longer needed
+     */
+    public final BalanceSubscription subscribe(
+            final BalanceListener listener) {
+        return events.subscribe(listener);
+    }
+
+    /**
+     * Get the asynchronous facade.
+     *
+     * Operations run on virtual threads where the JVM has them, on a fixed
+     * pool otherwise, or on ledger shards if the service was created with
+     * {@value #SHARDS_PROPERTY} set. All callers share the facade, so
+     * operations on the same account run in the order they were submitted
+     * by any of them. Not to be closed.
+     * @return Shared facade
+     */
+    public final AsyncBanking async() {
+        return async;
+    }
+
+    /**
+     * Create an asynchronous facade on an executor of the caller's.
+     *
+     * Operations are kept in order only against other operations of the
+     * same facade.
+     * @param executor Executor, that operations run on
+     * @return New facade
+     */
+    public final AsyncBanking async(final Executor executor) {
+        return new AsyncBanking(executor);
+    }
+
+    /**
+     * Create a sharded asynchronous facade.
+     *
+     * Accounts are split into shards by IBAN, each shard has a thread of
+     * its own, that applies all operations on its accounts. Operations are
+     * kept in order only against other operations of the same facade.
+     * The shard threads are the single writers of the accounts only while
+     * the calls allowed by {@link AsyncBanking} are the only ones changing
+     * them; synchronous calls stay safe, but are not ordered with them.
+     * @param shards Number of shards
+     * @return New facade, to be closed when no longer needed
+     */
+    public final AsyncBanking async(final int shards) {
+        return new AsyncBanking(new ShardedLedger(shards));
+    }
+
+    /**
+     * Recover accounts from a journal file and keep journaling to it.
+     *
+     * Account openings and balance changes in the file are replayed on top
+     * of the current state, a torn record at its end is cut off. A transfer
+     * between shards of a sharded facade, cut off after the debit and
+     * before the credit, is given back to its source. From then on every
+     * opening, credit, debit, transfer, conversion and posting batch is
+     * appended to the file and on disk before the call returns.
+     * Meant to be called on startup, before accounts are used.
+     * @param file Journal file, created if missing
+     * @return Number of records replayed
+     * @throws IOException File can not be read or written
+     */
+    public final synchronized long openJournal(final Path file)
+            throws IOException {
+        if (journal != Journal.NONE) {
+            throw new IllegalStateException("Journal is open already");
+        }
+        long records = Journal.replay(file, this);
+        journal = Journal.open(file);
+        return records;
+    }
+
+    /**
+     * Stop journaling and close the journal file.
+     * @throws IOException Pending records can not be written
+     */
+    public final synchronized void closeJournal() throws IOException {
+        Journal closed = journal;
+        journal = Journal.NONE;
+        closed.close();
+    }
+
+    /**
+     * Write a snapshot of all accounts and banks in the background.
+     *
+     * Accounts are copied one at a time under their own monitor, so other
+     * threads keep working meanwhile. The snapshot becomes visible under
+     * its name only once complete.
+     * @param file Snapshot file, replaced if it exists
+     * @return Number of accounts written, once done
+     */
+    public final CompletableFuture<Long> writeSnapshot(final Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return snapshot(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            return (SavingsAccount) account;
+        }, Snapshots.writer());
+    }
+
+    /**
+     * Write a snapshot of all accounts and banks periodically, in the
+     * background. A failed write stops the schedule, the returned future
+     * then reports the failure.
+     * @param file Snapshot file, replaced every time
+     * @param period Time between the end of a write and start of the next
+     * @param unit Time unit of the period
+     * @return Future, that cancels the schedule
+     */
+    public final ScheduledFuture<?> scheduleSnapshots(final Path file,
+            final long period, final TimeUnit unit) {
+        return Snapshots.writer().scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Write a snapshot of all accounts and banks.
+     * @param file Snapshot file
+     * @return Number of accounts written
+     * @throws IOException File can not be written
+     */
+    private long snapshot(final Path file) throws IOException {
+        return Snapshots.write(file, accounts.values(), banks.all(),
+            journal);
+    }
+
+    /**
+     * Restore accounts and banks from a snapshot file.
+     *
+     * The file is mapped into memory and accounts are built straight from
+     * it. Accounts already open keep their state. Meant to be called on
+     * startup, before openJournal with the journal file the snapshot was
+     * taken against, which then replays only changes the snapshot misses.
+     * @param file Snapshot file
+     * @return Number of accounts restored
+     * @throws IOException File can not be read or is not a snapshot
+     */
+    public final synchronized long loadSnapshot(final Path file)
+            throws IOException {
+        if (journal != Journal.NONE) {
+            throw new IllegalStateException("Journal is open already");
         }
-        SavingsAccount account = new SavingsAccount(normalized);
-        accounts.put(normalized, account);
-        return account;
+        return Snapshots.load(file, this);
+    }
+
+    /**
+     * Find an existing account.
+     * @param iban IBAN number
+     * @return Account, or null if there is none
+     */
+    final Account findAccount(final String iban) {
+        return accounts.get(IBANParser.normalize(iban));
+    }
+
+    /**
+     * Apply a batch of credits and debits to existing accounts.
+     *
+     * Postings are grouped by account and currency, every group is checked
+     * against the account rules and written with a single balance update.
+     * Postings to the same account and currency are applied in order.
+     * @param postings Postings
+     * @param mode Whether to skip failing postings or apply none at all
+     * @return Outcome of every posting, in the same order
+     */
+    public final List<PostingStatus> post(final List<Posting> postings,
+            final BatchMode mode) {
+        return Postings.post(postings, mode, this::findAccount, journal);
+    }
+
+    /**
+     * Apply a batch of credits and debits to existing accounts.
+     * @param postings Postings
+     * @param mode Whether to skip failing postings or apply none at all
+     * @return Outcome of every posting, in encounter order
+     * @see #post(List, BatchMode)
+     */
+    public final List<PostingStatus> post(final Stream<Posting> postings,
+            final BatchMode mode) {
+        return post(postings.collect(Collectors.toList()), mode);
+    }
+
+    /**
+     * Value all accounts in one currency with the current rates.
+     * @param currency Currency object
+     * @return Valuation
+     */
+    public final Valuation valuate(final Currency currency) {
+        return valuate(currency, Converter.getInstance().getRates(),
+            ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Value all accounts in one currency.
+     *
+     * Accounts are split across the pool and summed per currency, sums are
+     * converted once per currency with the given rates. Accounts opened
+     * while valuating may or may not be included.
+     * @param currency Currency object
+     * @param rates Rates snapshot
+     * @param pool Pool to run on
+     * @return Valuation
+     */
+    public final Valuation valuate(final Currency currency,
+            final ExchangeRates rates, final ForkJoinPool pool) {
+        return Valuations.value(accounts.values().toArray(new Account[0]),
+            currency, rates, pool);
+    }
+
+    /**
+     * Check whether IBAN check digits (mod-97) of new accounts are
+     * verified. Chosen when the service is created, see
+     * {@value #VERIFY_CHECKSUM_PROPERTY} and {@link #create(boolean)}.
+     * @return Whether to verify
+     */
+    public final boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    /**
+     * Check an IBAN the way new accounts are checked, without throwing.
+     * @param iban IBAN number
+     * @return VALID, or the reason the IBAN would be rejected
+     */
+    public final IBANStatus checkIBAN(final String iban) {
+        return IBANParser.tryParse(iban, verifyChecksum, new IBAN[1]);
     }
 
     /**
@@ -0,0 +1,18 @@
+package lt.vu.mif.jate.task01.bank;
+
+/**
+ * How a posting batch treats failing postings.
+ */
+public enum BatchMode {
+
+    /**
+     * Apply every posting that can be applied, skip the rest.
+     */
+    BEST_EFFORT,
+
+    /**
+     * Apply all postings or none of them.
+     */
+    ALL_OR_NOTHING
+
+}
@@ -2,32 +2,55 @@ package lt.vu.mif.jate.task01.bank;
 
 import lombok.Getter;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.Currency;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Currency converter singleton.
+ *
+ * Rates are held in an immutable ExchangeRates snapshot. Reloading builds
+ * a new snapshot and swaps it in atomically, conversions read the current
+ * snapshot without any locking.
  */
 public final class Converter {
 
     /**
-     * A singleton instance.
+     * Lazy holder of the singleton instance.
+     *
+     * The JVM initializes it once, on first access, so getInstance needs
+     * no locking.
      */
-    private static Converter instance;
+    private static final class Holder {
+
+        /**
+         * A singleton instance.
+         */
+        private static final Converter INSTANCE = new Converter();
+
+        /**
+         * Placeholder.
+         */
+        private Holder() { }
+
+    }
 
     /**
      * Get instance of currency converter service.
      * @return Instance
      */
-    static synchronized Converter getInstance() {
-        if (instance == null) {
-            instance = new Converter();
-        }
-        return instance;
+    static Converter getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
@@ -37,14 +60,9 @@ public final class Converter {
     private Currency baseCurrency = Currency.getInstance("EUR");
 
     /**
-     * Map, holding convertion rates from base currency.
-     */
-    private Map<Currency, BigDecimal> ratesFrom = new HashMap<>();
-
-    /**
-     * Map, holding convertion rates to base currency.
+     * Current rates snapshot.
      */
-    private Map<Currency, BigDecimal> ratesTo = new HashMap<>();
+    private volatile ExchangeRates rates;
 
     /**
      * Constructor.
@@ -52,37 +70,99 @@ public final class Converter {
      * Reads convertion rates from the resource file.
      */
     private Converter() {
-        // Read banks from file
-        ArrayList<String[]> lines = Util
-            .readResourceFileCSV("banking/rates.txt", ":");
-        for (String[] line: lines) {
-            try {
-                Currency currency = Currency.getInstance(line[0]);
-                ratesFrom.put(currency, new BigDecimal(line[2]));
-                ratesTo.put(currency, new BigDecimal(line[1]));
-            } catch (IllegalArgumentException e) {
-                continue;
-            }
-        }
+        ExchangeRates.Loader loader = new ExchangeRates.Loader();
+        Util.readResource("banking/rates.txt", ':', loader);
+        rates = loader.build(1);
     }
 
     /**
-     * Currency code validator.
-     * @param currency Currency code
+     * Get the current rates snapshot.
+     *
+     * Use the same snapshot for a series of conversions, that must be
+     * consistent with each other.
+     * @return Rates snapshot
      */
-    private void validateCurrency(final String currency) {
-        Util.validateCurrency(currency);
-        validateCurrency(Currency.getInstance(currency));
+    public ExchangeRates getRates() {
+        return rates;
     }
 
     /**
-     * Currency object validator.
-     * @param currency Currency object
+     * Replace the rates with the contents of a rates file.
+     *
+     * The new snapshot only becomes visible once fully built. A file that
+     * has no rate for the base currency, or drops a currency the current
+     * rates have, is rejected and the current rates stay in effect.
+     * @param file Path to a rates file
+     * @return New rates snapshot
+     * @throws IOException File can not be read or is not a rates file
      */
-    private void validateCurrency(final Currency currency) {
-        if (!ratesTo.containsKey(currency)) {
-            throw new IllegalArgumentException();
+    public synchronized ExchangeRates reload(final Path file)
+            throws IOException {
+        ExchangeRates.Loader loader = new ExchangeRates.Loader();
+        Records.read(file, ':', loader);
+        ExchangeRates loaded = loader.build(rates.getVersion() + 1);
+        if (!loaded.getCurrencies().contains(baseCurrency)) {
+            throw new IOException("No " + baseCurrency + " rate in " + file);
         }
+        for (Currency currency : rates.getCurrencies()) {
+            if (!loaded.getCurrencies().contains(currency)) {
+                throw new IOException("No " + currency + " rate in " + file);
+            }
+        }
+        rates = loaded;
+        return loaded;
+    }
+
+    /**
+     * Reload the rates every time the given file is replaced.
+     *
+     * The file is watched by a daemon thread, that only reloads when the
+     * file is created. A new version must be written next to it and moved
+     * over it with {@code ATOMIC_MOVE}, so it is never read half-written;
+     * writes to the file in place are not seen. A reload that fails is
+     * passed to the failure listener, on the watching thread, and the
+     * current rates stay in effect.
+     * @param file Path to a rates file
+     * @param failures Listener of failed reloads
+     * @return Handle, that stops watching when closed
+     * @throws IOException Directory can not be watched
+     */
+    public Closeable watch(final Path file,
+            final Consumer<? super IOException> failures)
+            throws IOException {
+        final Path path = file.toAbsolutePath();
+        final Path directory = path.getParent();
+        final Path name = path.getFileName();
+        if (directory == null || name == null) {
+            throw new IOException("Not a file: " + file);
+        }
+        final WatchService service = FileSystems.getDefault()
+            .newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event: key.pollEvents()) {
+                        changed |= name.equals(event.context());
+                    }
+                    key.reset();
+                    if (changed) {
+                        try {
+                            reload(path);
+                        } catch (IOException e) {
+                            failures.accept(e);
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }, "rates-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return service;
     }
 
     /**
@@ -91,7 +171,7 @@ public final class Converter {
      * @return Conversion rate
      */
     public BigDecimal getRateFromBase(final String currency) {
-        return getRateFromBase(Currency.getInstance(currency));
+        return getRateFromBase(CurrencyIndex.currency(currency));
     }
 
     /**
@@ -100,10 +180,7 @@ public final class Converter {
      * @return Conversion rate
      */
     public BigDecimal getRateFromBase(final Currency currency) {
-        if (!ratesFrom.containsKey(currency)) {
-            throw new IllegalArgumentException();
-        }
-        return ratesFrom.get(currency);
+        return rates.getRateFromBase(currency);
     }
 
     /**
@@ -112,7 +189,7 @@ public final class Converter {
      * @return Conversion rate
      */
     public BigDecimal getRateToBase(final String currency) {
-        return getRateToBase(Currency.getInstance(currency));
+        return getRateToBase(CurrencyIndex.currency(currency));
     }
 
     /**
@@ -121,10 +198,7 @@ public final class Converter {
      * @return Conversion rate
      */
     public BigDecimal getRateToBase(final Currency currency) {
-        if (!ratesTo.containsKey(currency)) {
-            throw new IllegalArgumentException();
-        }
-        return ratesTo.get(currency);
+        return rates.getRateToBase(currency);
     }
 
     /**
@@ -134,9 +208,7 @@ public final class Converter {
      * @return Converted amount
      */
     public BigDecimal fromBase(final String value, final String currency) {
-        Util.validateAmount(value);
-        validateCurrency(currency);
-        return new BigDecimal(value)
+        return Util.parseAmount(value)
                 .multiply(getRateFromBase(currency))
                 .setScale(2, BigDecimal.ROUND_HALF_UP);
     }
@@ -148,9 +220,7 @@ public final class Converter {
      * @return Converted amount
      */
     public BigDecimal toBase(final String value, final String currency) {
-        Util.validateAmount(value);
-        validateCurrency(currency);
-        return new BigDecimal(value)
+        return Util.parseAmount(value)
                 .multiply(getRateToBase(currency))
                 .setScale(2, BigDecimal.ROUND_HALF_UP);
     }
@@ -164,16 +234,9 @@ public final class Converter {
      */
     public BigDecimal convert(final String value,
             final String currencyFrom, final String currencyTo) {
-        Util.validateAmount(value);
-        validateCurrency(currencyFrom);
-        validateCurrency(currencyTo);
-        if (currencyFrom.equals(currencyTo)) {
-            return new BigDecimal(value);
-        }
-        return new BigDecimal(value)
-                .multiply(getRateToBase(currencyFrom))
-                .multiply(getRateFromBase(currencyTo))
-                .setScale(2, BigDecimal.ROUND_HALF_UP);
+        return convert(Util.parseAmount(value),
+                CurrencyIndex.currency(currencyFrom),
+                CurrencyIndex.currency(currencyTo));
     }
 
     /**
@@ -185,16 +248,7 @@ public final class Converter {
      */
     public BigDecimal convert(final BigDecimal value,
             final Currency currencyFrom, final Currency currencyTo) {
-        Util.validateAmount(value);
-        validateCurrency(currencyFrom);
-        validateCurrency(currencyTo);
-        if (currencyFrom.equals(currencyTo)) {
-            return value;
-        }
-        return value
-                .multiply(getRateToBase(currencyFrom))
-                .multiply(getRateFromBase(currencyTo))
-                .setScale(2, BigDecimal.ROUND_HALF_UP);
+        return rates.convert(value, currencyFrom, currencyTo);
     }
 
     /**
@@ -202,7 +256,7 @@ public final class Converter {
      * @return Currency Set
      */
     public Set<Currency> getCurrencies() {
-        return ratesFrom.keySet();
+        return rates.getCurrencies();
     }
 
 }
@@ -0,0 +1,111 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.Locale;
+
+/**
+ * Shared country codes and locales.
+ *
+ * Every two letter country code has an ordinal, its code string and
+ * Locale are built once and shared by all IBANs and banks of the country.
+ */
+final class Countries {
+
+    /**
+     * Placeholder.
+     */
+    private Countries() { }
+
+    /**
+     * Number of letters a country code is made of.
+     */
+    private static final int LETTERS = 26;
+
+    /**
+     * Number of two letter country codes.
+     */
+    static final int COUNT = LETTERS * LETTERS;
+
+    /**
+     * Country codes, by ordinal.
+     */
+    private static final String[] CODES = new String[COUNT];
+
+    /**
+     * Locales, by ordinal.
+     */
+    private static final Locale[] LOCALES = new Locale[COUNT];
+
+    static {
+        for (int i = 0; i < COUNT; i++) {
+            String code = new String(new char[] {
+                (char) ('A' + i / LETTERS), (char) ('A' + i % LETTERS)});
+            CODES[i] = code;
+            LOCALES[i] = new Locale(code, code);
+        }
+    }
+
+    /**
+     * Get the ordinal of a country code.
+     * @param first First letter, any case
+     * @param second Second letter, any case
+     * @return Ordinal, or -1 if not letters
+     */
+    static int ordinal(final char first, final char second) {
+        int high = letter(first);
+        int low = letter(second);
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        return high * LETTERS + low;
+    }
+
+    /**
+     * Get the ordinal of a country code.
+     * @param country Two letter country code, any case
+     * @return Ordinal, or -1 if not two letters
+     */
+    static int ordinal(final String country) {
+        if (country == null || country.length() != 2) {
+            return -1;
+        }
+        return ordinal(country.charAt(0), country.charAt(1));
+    }
+
+    /**
+     * Get the index of an ASCII letter.
+     * @param c Character
+     * @return Index between 0 and 25, or -1 if not a letter
+     */
+    private static int letter(final char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return -1;
+    }
+
+    /**
+     * Get a shared country code.
+     * @param ordinal Ordinal
+     * @return Upper case country code
+     */
+    static String code(final int ordinal) {
+        return CODES[ordinal];
+    }
+
+    /**
+     * Get the shared locale of a country.
+     * @param country Country code
+     * @return Locale, a new one if the code is not two letters
+     */
+    static Locale locale(final String country) {
+        int ordinal = ordinal(country);
+        if (ordinal < 0) {
+            return new Locale(country, country);
+        }
+        return LOCALES[ordinal];
+    }
+
+}
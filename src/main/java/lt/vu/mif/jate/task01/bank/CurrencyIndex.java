@@ -0,0 +1,154 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+
+/**
+ * Dense integer ordinals for currencies.
+ *
+ * Ordinals are assigned once, to every currency known to the JVM, sorted
+ * by currency code. That covers every currency Converter can load, so the
+ * ordinals never change while the program runs and can be used as array
+ * indexes.
+ *
+ * Currencies are looked up by their three letter code packed into an int,
+ * which indexes a table of ordinals; the ordinal then indexes the
+ * currencies. Neither lookup hashes, allocates or locks, unlike
+ * Currency.getInstance.
+ */
+final class CurrencyIndex {
+
+    /**
+     * Placeholder.
+     */
+    private CurrencyIndex() { }
+
+    /**
+     * Currencies, indexed by ordinal.
+     */
+    private static final Currency[] CURRENCIES;
+
+    /**
+     * Number of letters a currency code is made of.
+     */
+    private static final int LETTERS = 26;
+
+    /**
+     * Length of a currency code.
+     */
+    private static final int CODE_LENGTH = 3;
+
+    /**
+     * Ordinals, indexed by packed currency code, -1 if there is none.
+     */
+    private static final short[] ORDINALS =
+        new short[LETTERS * LETTERS * LETTERS];
+
+    static {
+        CURRENCIES = Currency.getAvailableCurrencies()
+            .toArray(new Currency[0]);
+        Arrays.sort(CURRENCIES,
+            Comparator.comparing(Currency::getCurrencyCode));
+        Arrays.fill(ORDINALS, (short) -1);
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            String code = CURRENCIES[i].getCurrencyCode();
+            int packed = -1;
+            if (code.length() == CODE_LENGTH) {
+                packed = pack(code.charAt(0), code.charAt(1), code.charAt(2));
+            }
+            if (packed < 0) {
+                throw new IllegalStateException("Bad currency code: "
+                    + code);
+            }
+            ORDINALS[packed] = (short) i;
+        }
+    }
+
+    /**
+     * Pack a currency code into a table index.
+     * @param first First letter
+     * @param second Second letter
+     * @param third Third letter
+     * @return Index, or -1 if not upper case letters
+     */
+    private static int pack(final char first, final char second,
+            final char third) {
+        int a = first - 'A';
+        int b = second - 'A';
+        int c = third - 'A';
+        if ((a | b | c) < 0 || a >= LETTERS || b >= LETTERS
+                || c >= LETTERS) {
+            return -1;
+        }
+        return (a * LETTERS + b) * LETTERS + c;
+    }
+
+    /**
+     * Get the number of ordinals.
+     * @return Number of currencies
+     */
+    static int size() {
+        return CURRENCIES.length;
+    }
+
+    /**
+     * Get the ordinal of a currency.
+     * @param currency Currency object
+     * @return Ordinal
+     */
+    static int ordinal(final Currency currency) {
+        return ordinal(currency.getCurrencyCode());
+    }
+
+    /**
+     * Get the ordinal of a currency code.
+     * @param code Upper case three letter currency code
+     * @return Ordinal
+     * @throws IllegalArgumentException Not a known currency code
+     */
+    static int ordinal(final CharSequence code) {
+        if (code.length() != CODE_LENGTH) {
+            throw new IllegalArgumentException("Bad currency code: " + code);
+        }
+        return ordinal(code.charAt(0), code.charAt(1), code.charAt(2));
+    }
+
+    /**
+     * Get the ordinal of a currency code.
+     * @param first First letter
+     * @param second Second letter
+     * @param third Third letter
+     * @return Ordinal
+     * @throws IllegalArgumentException Not a known currency code
+     */
+    static int ordinal(final char first, final char second,
+            final char third) {
+        int packed = pack(first, second, third);
+        if (packed < 0 || ORDINALS[packed] < 0) {
+            throw new IllegalArgumentException("Bad currency code: "
+                + first + second + third);
+        }
+        return ORDINALS[packed];
+    }
+
+    /**
+     * Get the currency by its code.
+     * @param code Upper case three letter currency code
+     * @return Currency object
+     * @throws IllegalArgumentException Not a known currency code
+     */
+    static Currency currency(final CharSequence code) {
+        return CURRENCIES[ordinal(code)];
+    }
+
+    /**
+     * Get the currency by its ordinal.
+     * @param ordinal Ordinal
+     * @return Currency object
+     */
+    static Currency currency(final int ordinal) {
+        return CURRENCIES[ordinal];
+    }
+
+}
@@ -20,28 +20,56 @@ public class CurrentAccount extends Account {
         super(iban);
     }
 
+    /**
+     * Constructor, that takes an already parsed IBAN and its bank.
+     * @param iban IBAN object
+     * @param bank Bank of the account
+     * @param banking Banking service, that the account belongs to
+     */
+    CurrentAccount(final IBAN iban, final Bank bank, final Banking banking) {
+        super(iban, bank, banking);
+    }
+
     @Override
-    public final void credit(final BigDecimal amount, final Currency currency) {
+    public final void credit(final BigDecimal amount,
+            final Currency currency) {
         Util.validateAmount(amount);
-        setBalance(balance(currency).add(amount), currency);
+        long minor = Money.toMinor(amount);
+        Journal journal = getBanking().getJournal();
+        long position;
+        synchronized (this) {
+            long balance = Money.add(balanceMinor(currency), minor);
+            position = journal.post(this, Posting.Direction.CREDIT, minor,
+                currency);
+            setBalanceMinor(balance, currency);
+        }
+        journal.sync(position);
     }
 
     @Override
-    public final void debit(final BigDecimal amount, final Currency currency) {
+    public final void debit(final BigDecimal amount,
+            final Currency currency) {
         Util.validateAmount(amount);
-        BigDecimal balance = balance(currency);
-        if (balance.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new NoFundsException();
+        long minor = Money.toMinor(amount);
+        Journal journal = getBanking().getJournal();
+        long position;
+        synchronized (this) {
+            long balance = balanceMinor(currency);
+            if (balance <= 0) {
+                throw NoFundsException.getInstance();
+            }
+            long next = Money.subtract(balance, minor);
+            position = journal.post(this, Posting.Direction.DEBIT, minor,
+                currency);
+            setBalanceMinor(next, currency);
         }
-        setBalance(balance(currency).subtract(amount), currency);
+        journal.sync(position);
     }
 
     @Override
     public final void debit(final BigDecimal amount, final Currency currency,
-                      final Account creditAccount) {
-        Util.validateAmount(amount);
-        debit(amount, currency);
-        creditAccount.credit(amount, currency);
+            final Account creditAccount) {
+        Transfers.transfer(this, creditAccount, amount, currency);
     }
 
 }
@@ -0,0 +1,234 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer of balance change events.
+ *
+ * Every balance change claims the next sequence number and writes its
+ * event to the slot of that number, in preallocated arrays; nothing is
+ * allocated per event. Writers never wait for readers: a reader that falls
+ * a whole ring behind is lapped, skips to the oldest event still in the
+ * ring and counts what it missed.
+ *
+ * Each slot carries the sequence number of the event in it, one ring
+ * before the first event. A writer claims its slot by swapping the number
+ * of the previous lap for a busy mark, so only one writer at a time fills
+ * a slot. A writer delayed by a whole ring finds a later number there and
+ * drops its event, which readers count as lost anyway; one finding an
+ * earlier lap still being written waits for it to finish. A reader takes
+ * an event only if it finds the expected number before and after reading
+ * it, so it never sees a torn or overwritten event. All slot accesses go
+ * through atomic arrays, which keeps the reads ordered between the two
+ * checks.
+ *
+ * Each subscriber has a thread of its own, that hands over all events
+ * published since its last poll as one batch.
+ */
+final class EventRing {
+
+    /**
+     * Sequence number of a slot, that is being written.
+     */
+    private static final long BUSY = Long.MIN_VALUE;
+
+    /**
+     * Longs per slot: currency ordinal, delta, balance.
+     */
+    private static final int STRIDE = 3;
+
+    /**
+     * Offset of the delta in a slot.
+     */
+    private static final int DELTA = 1;
+
+    /**
+     * Offset of the balance in a slot.
+     */
+    private static final int BALANCE = 2;
+
+    /**
+     * Empty polls a subscriber yields for, before it parks.
+     */
+    private static final int IDLE_SPINS = 100;
+
+    /**
+     * Time an idle subscriber parks for.
+     */
+    private static final long PARK_NANOS = 100000;
+
+    /**
+     * Number of slots, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * Next sequence number to claim.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Number of open subscriptions, events are published only if there
+     * are any.
+     */
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * Sequence number of the event in each slot.
+     */
+    private volatile AtomicLongArray sequences;
+
+    /**
+     * Currency ordinal, delta and balance of each event.
+     */
+    private AtomicLongArray values;
+
+    /**
+     * Account of each event.
+     */
+    private AtomicReferenceArray<Account> accounts;
+
+    /**
+     * Constructor. Slots are allocated on the first subscription.
+     * @param size Number of slots, a power of two
+     */
+    EventRing(final int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Not a power of two: " + size);
+        }
+        this.capacity = size;
+    }
+
+    /**
+     * Publish a balance change, unless nobody listens.
+     * The account monitor must be held.
+     * @param account Account
+     * @param ordinal Currency ordinal
+     * @param delta Change in minor units
+     * @param balance New balance in minor units
+     */
+    void publish(final Account account, final int ordinal, final long delta,
+            final long balance) {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        AtomicLongArray seqs = sequences;
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & (capacity - 1);
+        int base = slot * STRIDE;
+        long previous = sequence - capacity;
+        while (!seqs.compareAndSet(slot, previous, BUSY)) {
+            if (seqs.get(slot) > previous) {
+                // Overwritten by a later lap already
+                return;
+            }
+            // An earlier lap is still being written
+            Thread.yield();
+        }
+        // Each ordered store keeps all earlier stores before it
+        accounts.lazySet(slot, account);
+        values.lazySet(base, ordinal);
+        values.lazySet(base + DELTA, delta);
+        values.lazySet(base + BALANCE, balance);
+        seqs.lazySet(slot, sequence);
+    }
+
+    /**
+     * Start delivering events published from now on.
+     * @param listener Listener, called on the subscriber thread
+     * @return Subscription
+     */
+    synchronized BalanceSubscription subscribe(
+            final BalanceListener listener) {
+        if (sequences == null) {
+            AtomicLongArray seqs = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                seqs.set(i, i - capacity);
+            }
+            values = new AtomicLongArray(capacity * STRIDE);
+            accounts = new AtomicReferenceArray<>(capacity);
+            sequences = seqs;
+        }
+        subscribers.incrementAndGet();
+        BalanceSubscription subscription =
+            new BalanceSubscription(this, listener, next.get());
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Stop publishing for a closed subscription.
+     */
+    void unsubscribe() {
+        subscribers.decrementAndGet();
+    }
+
+    /**
+     * Deliver the events published since a position, as one batch.
+     * @param subscription Subscription
+     * @param event Event to fill in and hand over
+     * @return Whether there were any events
+     */
+    boolean poll(final BalanceSubscription subscription,
+            final BalanceEvent event) {
+        AtomicLongArray seqs = sequences;
+        long position = subscription.getPosition();
+        long claimed = next.get();
+        boolean delivered = false;
+        while (position < claimed) {
+            if (claimed - position > capacity) {
+                // Lapped, the oldest events are overwritten
+                subscription.lose(claimed - capacity - position);
+                position = claimed - capacity;
+            }
+            int slot = (int) position & (capacity - 1);
+            int base = slot * STRIDE;
+            long before = seqs.get(slot);
+            if (before != position) {
+                if (before < position) {
+                    // Claimed, but not written yet
+                    break;
+                }
+                // Lapped while polling
+                claimed = next.get();
+                continue;
+            }
+            Account account = accounts.get(slot);
+            long ordinal = values.get(base);
+            long delta = values.get(base + DELTA);
+            long balance = values.get(base + BALANCE);
+            if (seqs.get(slot) != position) {
+                // Overwritten while read
+                claimed = next.get();
+                continue;
+            }
+            event.set(position, account.toString(), (int) ordinal, delta,
+                balance);
+            subscription.deliver(event);
+            delivered = true;
+            position++;
+        }
+        subscription.setPosition(position);
+        if (delivered) {
+            subscription.endBatch();
+        }
+        return delivered;
+    }
+
+    /**
+     * Wait after an empty poll.
+     * @param idle Number of empty polls in a row
+     */
+    static void idle(final int idle) {
+        if (idle < IDLE_SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+}
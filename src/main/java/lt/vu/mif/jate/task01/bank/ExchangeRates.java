@@ -0,0 +1,209 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of exchange rates.
+ *
+ * Converter swaps whole snapshots when rates are reloaded, so a reader
+ * holding a snapshot always sees one consistent rate table.
+ */
+public final class ExchangeRates {
+
+    /**
+     * Number of columns in a rates file line.
+     */
+    private static final int COLUMNS = 3;
+
+    /**
+     * Snapshot version, increases by one with every reload.
+     */
+    @Getter
+    private final long version;
+
+    /**
+     * Time the snapshot was loaded.
+     */
+    @Getter
+    private final Instant timestamp;
+
+    /**
+     * Map, holding convertion rates from base currency.
+     */
+    private final Map<Currency, BigDecimal> ratesFrom;
+
+    /**
+     * Map, holding convertion rates to base currency.
+     */
+    private final Map<Currency, BigDecimal> ratesTo;
+
+    /**
+     * Number of currency ordinals, the side of the cross-rate matrix.
+     */
+    private final int ordinals = CurrencyIndex.size();
+
+    /**
+     * Cross-rate matrix, indexed by [from ordinal * ordinals + to ordinal].
+     *
+     * Each rate is the exact product of the rate to base currency and the
+     * rate from base currency, so a single multiplication followed by
+     * rounding gives the same result as the two-step conversion. Entries
+     * for currencies without rates are null.
+     */
+    private final BigDecimal[] crossRates =
+        new BigDecimal[ordinals * ordinals];
+
+    /**
+     * Constructor.
+     * @param v Snapshot version
+     * @param from Rates from base currency
+     * @param to Rates to base currency
+     */
+    private ExchangeRates(final long v, final Map<Currency, BigDecimal> from,
+            final Map<Currency, BigDecimal> to) {
+        this.version = v;
+        this.timestamp = Instant.now();
+        this.ratesFrom = Collections.unmodifiableMap(from);
+        this.ratesTo = Collections.unmodifiableMap(to);
+        for (Map.Entry<Currency, BigDecimal> x: ratesTo.entrySet()) {
+            int row = CurrencyIndex.ordinal(x.getKey()) * ordinals;
+            for (Map.Entry<Currency, BigDecimal> y: ratesFrom.entrySet()) {
+                int column = CurrencyIndex.ordinal(y.getKey());
+                BigDecimal rate = BigDecimal.ONE;
+                if (!x.getKey().equals(y.getKey())) {
+                    rate = x.getValue().multiply(y.getValue());
+                }
+                crossRates[row + column] = rate;
+            }
+        }
+    }
+
+    /**
+     * Builder of a snapshot from the records of a rates file.
+     *
+     * Each record is "code:rate to base:rate from base". Records with
+     * unknown currencies or malformed numbers are skipped.
+     */
+    static final class Loader implements Records.Handler {
+
+        /**
+         * Rates from base currency.
+         */
+        private final Map<Currency, BigDecimal> from = new HashMap<>();
+
+        /**
+         * Rates to base currency.
+         */
+        private final Map<Currency, BigDecimal> to = new HashMap<>();
+
+        @Override
+        public void accept(final Records.Fields fields) {
+            if (fields.size() < COLUMNS) {
+                return;
+            }
+            try {
+                Currency currency = CurrencyIndex.currency(fields.get(0));
+                BigDecimal rateFrom = new BigDecimal(fields.get(2));
+                BigDecimal rateTo = new BigDecimal(fields.get(1));
+                from.put(currency, rateFrom);
+                to.put(currency, rateTo);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+        }
+
+        /**
+         * Build the snapshot of the records read so far.
+         * @param version Snapshot version
+         * @return Snapshot
+         */
+        ExchangeRates build(final long version) {
+            return new ExchangeRates(version, new HashMap<>(from),
+                new HashMap<>(to));
+        }
+
+    }
+
+    /**
+     * Get convertion rate from base currency to chosen currency.
+     * @param currency Currency object
+     * @return Conversion rate
+     */
+    public BigDecimal getRateFromBase(final Currency currency) {
+        BigDecimal rate = ratesFrom.get(currency);
+        if (rate == null) {
+            throw new IllegalArgumentException();
+        }
+        return rate;
+    }
+
+    /**
+     * Get convertion rate from chosen currency to base currency.
+     * @param currency Currency object
+     * @return Conversion rate
+     */
+    public BigDecimal getRateToBase(final Currency currency) {
+        BigDecimal rate = ratesTo.get(currency);
+        if (rate == null) {
+            throw new IllegalArgumentException();
+        }
+        return rate;
+    }
+
+    /**
+     * Get the cross rate between two currencies.
+     * @param currencyFrom Currency object to convert from
+     * @param currencyTo Currency object to convert to
+     * @return Conversion rate
+     */
+    BigDecimal getCrossRate(final Currency currencyFrom,
+            final Currency currencyTo) {
+        BigDecimal rate = crossRates[CurrencyIndex.ordinal(currencyFrom)
+            * ordinals + CurrencyIndex.ordinal(currencyTo)];
+        if (rate == null) {
+            throw new IllegalArgumentException();
+        }
+        return rate;
+    }
+
+    /**
+     * Convert amount from any currency to any other currency.
+     * @param value Amount
+     * @param currencyFrom Currency object to convert from
+     * @param currencyTo Currency object to convert to
+     * @return Converted amount
+     */
+    public BigDecimal convert(final BigDecimal value,
+            final Currency currencyFrom, final Currency currencyTo) {
+        Util.validateAmount(value);
+        BigDecimal rate = getCrossRate(currencyFrom, currencyTo);
+        if (currencyFrom.equals(currencyTo)) {
+            return value;
+        }
+        return value
+                .multiply(rate)
+                .setScale(2, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * Get a Set with all available currencies.
+     * @return Currency Set
+     */
+    public Set<Currency> getCurrencies() {
+        return ratesFrom.keySet();
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeRates#" + version + " (" + timestamp + ")";
+    }
+
+}
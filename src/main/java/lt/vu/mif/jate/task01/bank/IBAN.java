@@ -1,39 +1,176 @@
 package lt.vu.mif.jate.task01.bank;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.math.BigInteger;
 
 /**
  * IBAN.
+ *
+ * Kept compact, as there is one per account: the country is an ordinal
+ * into the shared country codes, the account number a long unless it has
+ * too many digits.
+ *
+ * Two IBANs are equal if their normalized numbers are, the hash of the
+ * number is computed once.
  */
-@AllArgsConstructor
 public class IBAN {
 
     /**
      * IBAN number.
      */
     @Getter
-    private String iban;
+    private final String iban;
 
     /**
-     * Country code.
+     * Country ordinal.
      */
-    @Getter
-    private String country;
+    private final short country;
 
     /**
      * Bank code.
      */
     @Getter
-    private int bankCode;
+    private final int bankCode;
 
     /**
-     * Account number.
+     * Account number, if it fits into a long.
      */
-    @Getter
-    private BigInteger accountNumber;
+    private final long account;
+
+    /**
+     * Account number, if it does not fit into a long, otherwise null.
+     */
+    private final BigInteger bigAccount;
+
+    /**
+     * Hash of the IBAN number.
+     */
+    private final int hash;
+
+    /**
+     * IBAN constructor.
+     * @param a IBAN number
+     * @param b Two letter country code
+     * @param c Bank code
+     * @param d Account number
+     * @throws IllegalArgumentException Country is not two letters
+     */
+    public IBAN(final String a, final String b, final int c,
+            final BigInteger d) {
+        this(a, checkedOrdinal(b), c, d);
+    }
+
+    /**
+     * Compact IBAN constructor.
+     * @param a IBAN number
+     * @param b Country ordinal
+     * @param c Bank code
+     * @param d Account number
+     */
+    IBAN(final String a, final int b, final int c, final long d) {
+        this.iban = a;
+        this.country = (short) b;
+        this.bankCode = c;
+        this.account = d;
+        this.bigAccount = null;
+        this.hash = a.hashCode();
+    }
+
+    /**
+     * Compact IBAN constructor.
+     * @param a IBAN number
+     * @param b Country ordinal
+     * @param c Bank code
+     * @param d Account number
+     */
+    IBAN(final String a, final int b, final int c, final BigInteger d) {
+        this.iban = a;
+        this.country = (short) b;
+        this.bankCode = c;
+        if (d.bitLength() < Long.SIZE) {
+            this.account = d.longValue();
+            this.bigAccount = null;
+        } else {
+            this.account = 0;
+            this.bigAccount = d;
+        }
+        this.hash = a.hashCode();
+    }
+
+    /**
+     * Get the ordinal of a country code.
+     * @param country Country code
+     * @return Ordinal
+     * @throws IllegalArgumentException Country is not two letters
+     */
+    private static int checkedOrdinal(final String country) {
+        int ordinal = Countries.ordinal(country);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Bad country: " + country);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Get the country code.
+     * @return Upper case two letter country code
+     */
+    public final String getCountry() {
+        return Countries.code(country);
+    }
+
+    /**
+     * Get the country ordinal.
+     * @return Ordinal
+     */
+    final int getCountryOrdinal() {
+        return country;
+    }
+
+    /**
+     * Get the account number.
+     * @return Account number
+     */
+    public final BigInteger getAccountNumber() {
+        if (bigAccount != null) {
+            return bigAccount;
+        }
+        return BigInteger.valueOf(account);
+    }
+
+    /**
+     * Check whether the account number fits into a long.
+     * @return Whether getAccountLong holds the account number
+     */
+    final boolean isAccountLong() {
+        return bigAccount == null;
+    }
+
+    /**
+     * Get the account number, if it fits into a long.
+     * @return Account number
+     */
+    final long getAccountLong() {
+        return account;
+    }
+
+    @Override
+    public final boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof IBAN) {
+            IBAN other = (IBAN) obj;
+            return other.hash == hash && other.iban.equals(iban);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
 
     @Override
     public final String toString() {
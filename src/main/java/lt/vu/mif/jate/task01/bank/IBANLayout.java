@@ -0,0 +1,168 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * Compiled IBAN layout of a single country.
+ *
+ * Built once from a rule in iban.txt, such as "LTkk bbbb bccc cccc cccc",
+ * where "kk" are the check digits, "b" the bank code, "s" the branch code
+ * and "c" the account number. Every other letter is a national field, a
+ * digit in the rule stands for itself. Holds the field offsets and the
+ * character class of every position, so parsing needs no rule scanning.
+ */
+final class IBANLayout {
+
+    /**
+     * Character class: decimal digit.
+     */
+    private static final byte DIGIT = 0;
+
+    /**
+     * Character class: upper-case letter or decimal digit.
+     */
+    private static final byte ALPHANUMERIC = 1;
+
+    /**
+     * Offset of the check digits.
+     */
+    static final int CHECK_START = 2;
+
+    /**
+     * Offset right after the check digits.
+     */
+    static final int CHECK_END = 4;
+
+    /**
+     * Country code.
+     */
+    @Getter
+    private final String country;
+
+    /**
+     * Total IBAN length.
+     */
+    @Getter
+    private final int length;
+
+    /**
+     * Offset of the bank code.
+     */
+    @Getter
+    private final int bankStart;
+
+    /**
+     * Offset right after the bank code.
+     */
+    @Getter
+    private final int bankEnd;
+
+    /**
+     * Offset of the branch code, equal to branchEnd if there is none.
+     */
+    @Getter
+    private final int branchStart;
+
+    /**
+     * Offset right after the branch code.
+     */
+    @Getter
+    private final int branchEnd;
+
+    /**
+     * Offset of the account number.
+     */
+    @Getter
+    private final int accountStart;
+
+    /**
+     * Offset right after the account number.
+     */
+    @Getter
+    private final int accountEnd;
+
+    /**
+     * Character class of every position.
+     */
+    private final byte[] classes;
+
+    /**
+     * Constructor.
+     * @param rule Rule with spaces removed
+     */
+    private IBANLayout(final String rule) {
+        this.country = rule.substring(0, CHECK_START)
+            .toUpperCase(Locale.ENGLISH);
+        this.length = rule.length();
+        this.bankStart = start(rule, 'b');
+        this.bankEnd = end(rule, 'b');
+        this.branchStart = start(rule, 's');
+        this.branchEnd = end(rule, 's');
+        this.accountStart = start(rule, 'c');
+        this.accountEnd = end(rule, 'c');
+        this.classes = new byte[length];
+        for (int i = CHECK_START; i < length; i++) {
+            char field = rule.charAt(i);
+            if (field == 'k' || field == 'b' || field == 'c'
+                    || Character.isDigit(field)) {
+                classes[i] = DIGIT;
+            } else {
+                classes[i] = ALPHANUMERIC;
+            }
+        }
+    }
+
+    /**
+     * Compile a rule.
+     * @param rule Rule, as in iban.txt
+     * @return Layout
+     */
+    static IBANLayout compile(final String rule) {
+        return new IBANLayout(rule.replace(" ", ""));
+    }
+
+    /**
+     * Find where a field starts.
+     * @param rule Rule
+     * @param field Field letter
+     * @return Offset, or rule length if the field is missing
+     */
+    private static int start(final String rule, final char field) {
+        int index = rule.indexOf(field, CHECK_START);
+        if (index < 0) {
+            return rule.length();
+        }
+        return index;
+    }
+
+    /**
+     * Find where a field ends.
+     * @param rule Rule
+     * @param field Field letter
+     * @return Offset right after the field, or rule length if it is missing
+     */
+    private static int end(final String rule, final char field) {
+        int index = rule.lastIndexOf(field);
+        if (index < CHECK_START) {
+            return rule.length();
+        }
+        return index + 1;
+    }
+
+    /**
+     * Check a character against the class of its position.
+     * @param position Position in the normalized IBAN, past the country
+     * @param c Upper-case character
+     * @return Whether the character is allowed there
+     */
+    boolean accepts(final int position, final char c) {
+        boolean digit = c >= '0' && c <= '9';
+        if (classes[position] == DIGIT) {
+            return digit;
+        }
+        return digit || c >= 'A' && c <= 'Z';
+    }
+
+}
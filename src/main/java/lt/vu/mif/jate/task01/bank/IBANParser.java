@@ -3,12 +3,21 @@ package lt.vu.mif.jate.task01.bank;
 import lt.vu.mif.jate.task01.bank.exception.IBANException;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * IBAN Parser and IBAN object factory.
+ *
+ * Parsing is a single pass over the input characters: spaces are skipped
+ * and letters upper-cased on the fly, every character is checked against
+ * the compiled country layout, bank code and account number are
+ * accumulated as numbers at their fixed offsets. Apart from the resulting
+ * IBAN (and its normalized string, if the input was not normalized
+ * already) nothing is allocated.
+ *
+ * Check digits are verified with ISO 7064 MOD 97-10 in the same pass, as
+ * a running int remainder, if the caller asks for it.
  */
 final class IBANParser {
 
@@ -18,83 +27,389 @@ final class IBANParser {
     private IBANParser() { }
 
     /**
-     * Map, which stores contents of iban.txt.
+     * Number of characters in a country code.
      */
-    private static HashMap<String, String> ibanRules;
+    private static final int COUNTRY_LENGTH = 2;
 
     /**
-     * Returns contents of ibanRules in lazy and cached manner.
-     * @return IBAN rules
+     * Number of decimal digits, that always fit into a long.
      */
-    private static synchronized HashMap<String, String> getIBANRules() {
-        if (ibanRules != null) {
-            return ibanRules;
+    private static final int LONG_DIGITS = 18;
+
+    /**
+     * Number of decimal digits, that always fit into an int.
+     */
+    private static final int MAX_BANK_DIGITS = 9;
+
+    /**
+     * Decimal radix.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * ISO 7064 MOD 97-10 modulus.
+     */
+    private static final int MOD = 97;
+
+    /**
+     * Numeric value of the letter "A".
+     */
+    private static final int LETTER_BASE = 10;
+
+    /**
+     * Country code and check digits take six decimal digits, when moved to
+     * the end of the IBAN; this is 10^6 modulo 97.
+     */
+    private static final int HEAD_SHIFT = 27;
+
+    /**
+     * Lazy holder of the compiled contents of iban.txt.
+     *
+     * The JVM initializes it once, on first access, so parsing needs no
+     * locking.
+     */
+    private static final class Rules {
+
+        /**
+         * IBAN layouts, indexed by packed country code.
+         */
+        private static final IBANLayout[] LAYOUTS = compileIBANRules();
+
+        /**
+         * Placeholder.
+         */
+        private Rules() { }
+
+    }
+
+    /**
+     * Returns compiled contents of iban.txt in lazy and cached manner.
+     * @return IBAN layouts, indexed by packed country code
+     */
+    private static IBANLayout[] getIBANRules() {
+        return Rules.LAYOUTS;
+    }
+
+    /**
+     * Compiles contents of iban.txt.
+     * @return IBAN layouts, indexed by packed country code
+     */
+    private static IBANLayout[] compileIBANRules() {
+        IBANLayout[] rules = new IBANLayout[Countries.COUNT];
+        Util.readResource("banking/iban.txt", ':', line -> {
+            IBANLayout layout = IBANLayout.compile(line.get(1));
+            rules[Countries.ordinal(layout.getCountry())] = layout;
+        });
+        return rules;
+    }
+
+    /**
+     * Upper-cases a single IBAN character.
+     * @param c Character
+     * @return Upper-case character
+     */
+    private static char fold(final char c) {
+        if (c >= 'a' && c <= 'z') {
+            return (char) (c - 'a' + 'A');
         }
-        ibanRules = new HashMap<>();
-        ArrayList<String[]> lines = Util.readResourceFileCSV(
-            "banking/iban.txt", ":");
-        for (String[] line: lines) {
-            String ibanRule = line[1].replace(" ", "");
-            String country = ibanRule
-                .substring(0, 2)
-                .toUpperCase(Locale.ENGLISH);
-            ibanRules.put(country, ibanRule);
+        return Character.toUpperCase(c);
+    }
+
+    /**
+     * Feeds one IBAN character into a running mod-97 remainder.
+     *
+     * Letters count as two digits, "A" being 10 and "Z" being 35.
+     * @param remainder Remainder so far, below 97
+     * @param c Upper-case letter or digit
+     * @return New remainder
+     */
+    private static int mod97(final int remainder, final char c) {
+        if (c >= 'A') {
+            return (remainder * RADIX * RADIX + c - 'A' + LETTER_BASE) % MOD;
         }
-        return ibanRules;
+        return (remainder * RADIX + c - '0') % MOD;
     }
 
     /**
-     * Extracts a string by pattern matching against the IBAN rule.
-     * @param value String to extract from
-     * @param rule String with the pattern
-     * @param chr Character, denoting the pattern we need to get
-     * @return Pattern-matched string
+     * Verifies check digits of a normalized IBAN.
+     * @param iban Normalized IBAN, upper-case letters and digits only
+     * @return Whether the mod-97 remainder is 1
      */
-    private static String extractStringAtChar(final String value,
-            final String rule, final String chr) {
-        return value.substring(rule.indexOf(chr), rule.lastIndexOf(chr) + 1);
+    static boolean isChecksumValid(final CharSequence iban) {
+        int head = 0;
+        for (int i = 0; i < IBANLayout.CHECK_END; i++) {
+            head = mod97(head, iban.charAt(i));
+        }
+        int remainder = 0;
+        for (int i = IBANLayout.CHECK_END; i < iban.length(); i++) {
+            remainder = mod97(remainder, iban.charAt(i));
+        }
+        return (remainder * HEAD_SHIFT + head) % MOD == 1;
     }
 
     /**
      * Normalizes the IBAN string (trims spaces and does uppercase).
+     *
+     * Returns the very same string if it is normalized already.
      * @param iban IBAN string
      * @return Normalized string
      */
-    static String normalize(final String iban) {
-        return iban.replace(" ", "").toUpperCase(Locale.ENGLISH);
+    static String normalize(final CharSequence iban) {
+        int length = iban.length();
+        int i = 0;
+        while (i < length) {
+            char c = iban.charAt(i);
+            if (c == ' ' || fold(c) != c) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return iban.toString();
+        }
+        char[] chars = new char[length];
+        int n = 0;
+        for (int j = 0; j < length; j++) {
+            char c = iban.charAt(j);
+            if (c != ' ') {
+                chars[n++] = fold(c);
+            }
+        }
+        return new String(chars, 0, n);
     }
 
     /**
-     * Parse an IBAN string to get an IBAN object.
-     * @param iban IBAN string
+     * Parse ASCII IBAN bytes between the buffer's position and limit,
+     * without verifying check digits.
+     *
+     * The buffer's position is left untouched.
+     * @param iban IBAN bytes
+     * @throws IBANException Country not found, wrong length or format
+     * @return IBAN object
+     */
+    static IBAN parse(final ByteBuffer iban) throws IBANException {
+        return parse(new AsciiSequence(iban), false);
+    }
+
+    /**
+     * Parse an IBAN character sequence to get an IBAN object, without
+     * verifying check digits.
+     * @param iban IBAN characters
      * @throws IBANException Country not found, wrong length or format
      * @return IBAN object
      */
-    static IBAN parse(final String iban) throws IBANException {
+    static IBAN parse(final CharSequence iban) throws IBANException {
+        return parse(iban, false);
+    }
+
+    /**
+     * Parse an IBAN character sequence to get an IBAN object.
+     * @param iban IBAN characters
+     * @param verify Whether to verify check digits
+     * @throws IBANException Country not found, wrong length, format or
+     *  check digits
+     * @return IBAN object
+     */
+    static IBAN parse(final CharSequence iban, final boolean verify)
+            throws IBANException {
+        IBAN[] parsed = new IBAN[1];
+        IBANStatus status = tryParse(iban, verify, parsed);
+        if (status != IBANStatus.VALID) {
+            throw reject(iban, status);
+        }
+        return parsed[0];
+    }
+
+    /**
+     * Build the exception, that tells why an IBAN was rejected.
+     * @param iban IBAN characters
+     * @param status Reason
+     * @return Exception
+     */
+    private static IBANException reject(final CharSequence iban,
+            final IBANStatus status) {
+        String normalized = normalize(iban);
+        switch (status) {
+            case UNKNOWN_COUNTRY:
+                return new IBANException(normalized, "IBAN country not found: "
+                    + normalized.substring(0,
+                        Math.min(COUNTRY_LENGTH, normalized.length())));
+            case WRONG_LENGTH:
+                IBANLayout layout = getIBANRules()[Countries.ordinal(
+                    normalized.charAt(0), normalized.charAt(1))];
+                return new IBANException(normalized,
+                    "IBAN number length wrong: expected " + layout.getLength()
+                    + ", got " + normalized.length());
+            case WRONG_FORMAT:
+                return new IBANException(normalized, "IBAN format wrong: "
+                    + normalized);
+            default:
+                return new IBANException(normalized, "IBAN checksum wrong: "
+                    + normalized);
+        }
+    }
+
+    /**
+     * Parse an IBAN character sequence without throwing.
+     *
+     * A rejected IBAN costs about the same as a valid one: nothing is
+     * allocated and no exception is created.
+     * @param iban IBAN characters
+     * @param verify Whether to verify check digits
+     * @param parsed Receives the IBAN object, if it is valid
+     * @return VALID, or the reason the IBAN is rejected
+     */
+    static IBANStatus tryParse(final CharSequence iban, final boolean verify,
+            final IBAN[] parsed) {
+        int length = iban.length();
+        // Find the country code
+        char first = 0;
+        char second = 0;
+        int position = 0;
+        int i = 0;
+        while (i < length && position < COUNTRY_LENGTH) {
+            char c = iban.charAt(i++);
+            if (c != ' ') {
+                second = fold(c);
+                if (position == 0) {
+                    first = second;
+                }
+                position++;
+            }
+        }
+        int index = -1;
+        if (position == COUNTRY_LENGTH) {
+            index = Countries.ordinal(first, second);
+        }
+        IBANLayout layout = null;
+        if (index >= 0) {
+            layout = getIBANRules()[index];
+        }
+        if (layout == null) {
+            return IBANStatus.UNKNOWN_COUNTRY;
+        }
+        // Walk the rest of the characters along the layout
+        int expected = layout.getLength();
+        int bankStart = layout.getBankStart();
+        int bankEnd = layout.getBankEnd();
+        int accountStart = layout.getAccountStart();
+        int accountEnd = layout.getAccountEnd();
+        boolean malformed = bankEnd - bankStart > MAX_BANK_DIGITS
+            || accountEnd - accountStart > 2 * LONG_DIGITS;
+        long bankCode = 0;
+        long accountHigh = 0;
+        long accountLow = 0;
+        int head = mod97(mod97(0, first), second);
+        int remainder = 0;
+        for (; i < length; i++) {
+            char c = fold(iban.charAt(i));
+            if (c == ' ') {
+                continue;
+            }
+            if (position < expected) {
+                malformed |= !layout.accepts(position, c);
+                if (verify && !malformed) {
+                    if (position < IBANLayout.CHECK_END) {
+                        head = mod97(head, c);
+                    } else {
+                        remainder = mod97(remainder, c);
+                    }
+                }
+                int digit = c - '0';
+                if (position >= bankStart && position < bankEnd) {
+                    bankCode = bankCode * RADIX + digit;
+                } else if (position >= accountStart && position < accountEnd) {
+                    if (position < accountStart + LONG_DIGITS) {
+                        accountHigh = accountHigh * RADIX + digit;
+                    } else {
+                        accountLow = accountLow * RADIX + digit;
+                    }
+                }
+            }
+            position++;
+        }
+        if (expected != position) {
+            return IBANStatus.WRONG_LENGTH;
+        }
+        if (malformed) {
+            return IBANStatus.WRONG_FORMAT;
+        }
+        if (verify && (remainder * HEAD_SHIFT + head) % MOD != 1) {
+            return IBANStatus.WRONG_CHECKSUM;
+        }
         String normalized = normalize(iban);
-        String country = normalized.substring(0, 2);
-        if (!getIBANRules().containsKey(country)) {
-            throw new IBANException(normalized, "IBAN country not found: "
-                + country);
-        }
-        String rule = getIBANRules().get(country);
-        if (rule.length() != normalized.length()) {
-            throw new IBANException(normalized, "IBAN number length wrong: "
-                + "expected " + rule.length()
-                + ", got " + normalized.length());
-        }
-        IBAN parsedIban;
-        try {
-            int bankCode = Integer.parseInt(extractStringAtChar(normalized,
-                rule, "b"));
-            BigInteger accountNumber = new BigInteger(extractStringAtChar(
-                normalized, rule, "c"));
-            parsedIban = new IBAN(normalized, country, bankCode, accountNumber);
-        } catch (NumberFormatException e) {
-            throw new IBANException(normalized, "IBAN format wrong: "
-                + normalized);
-        }
-        return parsedIban;
+        int accountDigits = accountEnd - accountStart;
+        if (accountDigits <= LONG_DIGITS) {
+            parsed[0] = new IBAN(normalized, index, (int) bankCode,
+                accountHigh);
+        } else {
+            BigInteger accountNumber = BigInteger.valueOf(accountHigh)
+                .multiply(BigInteger.TEN.pow(accountDigits - LONG_DIGITS))
+                .add(BigInteger.valueOf(accountLow));
+            parsed[0] = new IBAN(normalized, index, (int) bankCode,
+                accountNumber);
+        }
+        return IBANStatus.VALID;
+    }
+
+    /**
+     * Read-only character view over ASCII bytes.
+     */
+    private static final class AsciiSequence implements CharSequence {
+
+        /**
+         * Underlying bytes.
+         */
+        private final ByteBuffer bytes;
+
+        /**
+         * Index of the first character in the buffer.
+         */
+        private final int offset;
+
+        /**
+         * Number of characters.
+         */
+        private final int length;
+
+        /**
+         * Constructor.
+         * @param buffer Bytes between position and limit
+         */
+        AsciiSequence(final ByteBuffer buffer) {
+            this.bytes = buffer;
+            this.offset = buffer.position();
+            this.length = buffer.remaining();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) Byte.toUnsignedInt(bytes.get(offset + index));
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (bytes.hasArray()) {
+                return new String(bytes.array(), bytes.arrayOffset() + offset,
+                    length, StandardCharsets.ISO_8859_1);
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+
     }
 
 }
@@ -0,0 +1,33 @@
+package lt.vu.mif.jate.task01.bank;
+
+/**
+ * Outcome of checking an IBAN.
+ */
+public enum IBANStatus {
+
+    /**
+     * IBAN is valid.
+     */
+    VALID,
+
+    /**
+     * No IBAN layout for the country code.
+     */
+    UNKNOWN_COUNTRY,
+
+    /**
+     * IBAN is too short or too long for its country.
+     */
+    WRONG_LENGTH,
+
+    /**
+     * A character does not fit the layout of the country.
+     */
+    WRONG_FORMAT,
+
+    /**
+     * Check digits do not match.
+     */
+    WRONG_CHECKSUM
+
+}
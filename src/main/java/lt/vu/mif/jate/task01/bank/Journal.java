@@ -0,0 +1,1004 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+import lt.vu.mif.jate.task01.bank.exception.WrongAccountTypeException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of balance changes.
+ *
+ * Every account opening, credit, debit, transfer and conversion is
+ * appended as one binary record: length, CRC32 and a payload of type,
+ * IBANs, currency codes and amounts in minor units. A posting batch
+ * appends one record per account. Records are appended to a memory
+ * buffer while the account monitors are held, before the balances
+ * change, the caller then waits in sync until the record is on disk.
+ * Each record leaves its file position on the accounts it changed. Once
+ * a flush has failed, appending throws, so no balance changes anymore.
+ *
+ * Sync does group commit: one waiting thread writes everything appended
+ * so far and forces the channel, the others wait for it and are released
+ * together, so one force covers many operations. A thread that runs
+ * operations in batches, like a ledger shard, defers its syncs and waits
+ * once per batch.
+ *
+ * Recovery replays openings first, then all balance changes. Changes are
+ * replayed as plain sums, so their order across accounts does not matter.
+ * Changes at or before the position an account was restored with, from a
+ * snapshot, are skipped. A torn record at the end is cut off.
+ *
+ * A transfer across ledger shards is recorded as sent by its source, then
+ * as received by its target or returned to its source. Recovery gives
+ * the money of a transfer sent and never settled back to its source.
+ */
+public final class Journal implements Closeable {
+
+    /**
+     * Record type: account opened.
+     */
+    private static final byte OPEN = 1;
+
+    /**
+     * Record type: account credited.
+     */
+    private static final byte CREDIT = 2;
+
+    /**
+     * Record type: account debited.
+     */
+    private static final byte DEBIT = 3;
+
+    /**
+     * Record type: money moved between accounts.
+     */
+    private static final byte TRANSFER = 4;
+
+    /**
+     * Record type: currencies converted on an account.
+     */
+    private static final byte CONVERT = 5;
+
+    /**
+     * Record type: postings of a batch to one account.
+     */
+    private static final byte POSTINGS = 6;
+
+    /**
+     * Record type: money of a transfer across shards taken from its source.
+     */
+    private static final byte SENT = 7;
+
+    /**
+     * Record type: money of a transfer across shards put to its target.
+     */
+    private static final byte RECEIVED = 8;
+
+    /**
+     * Record type: money of a transfer across shards given back to its
+     * source.
+     */
+    private static final byte RETURNED = 9;
+
+    /**
+     * Account kind: CurrentAccount.
+     */
+    private static final byte CURRENT_ACCOUNT = 0;
+
+    /**
+     * Account kind: CreditAccount.
+     */
+    private static final byte CREDIT_ACCOUNT = 1;
+
+    /**
+     * Account kind: SavingsAccount.
+     */
+    private static final byte SAVINGS_ACCOUNT = 2;
+
+    /**
+     * Length and CRC32 in front of every record.
+     */
+    private static final int HEADER = 8;
+
+    /**
+     * Largest record a fixed size operation produces.
+     */
+    private static final int MAX_FIXED_RECORD = 128;
+
+    /**
+     * Largest record length recovery accepts, anything longer is garbage.
+     */
+    private static final int MAX_RECORD = 1073741824;
+
+    /**
+     * Initial size of the append buffer.
+     */
+    private static final int BUFFER = 65536;
+
+    /**
+     * Size of a currency code field.
+     */
+    private static final int CURRENCY_LENGTH = 3;
+
+    /**
+     * Largest size of an IBAN and a currency code field.
+     */
+    private static final int IBAN_CURRENCY = 40;
+
+    /**
+     * Size of a posting entry: direction, currency and amount.
+     */
+    private static final int POSTING = 1 + CURRENCY_LENGTH + Long.BYTES;
+
+    /**
+     * Journal that records nothing.
+     */
+    static final Journal NONE = new Journal(null, 0);
+
+    /**
+     * Positions the current thread has deferred its syncs to, the highest
+     * per journal, or no map if it syncs at once.
+     */
+    private static final ThreadLocal<Map<Journal, Long>> DEFERRED =
+        new ThreadLocal<>();
+
+    /**
+     * File channel, or null if nothing is recorded.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Lock of the buffers and positions. Not a monitor, so a virtual
+     * thread waiting for a flush leaves its carrier thread free.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a flush is finished.
+     */
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * Records appended, but not written yet.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Second buffer, null while a flush is writing it.
+     */
+    private ByteBuffer spare;
+
+    /**
+     * Checksum calculator.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * File position after the last appended record.
+     */
+    private long appended;
+
+    /**
+     * File position, up to which records are on disk.
+     */
+    private long durable;
+
+    /**
+     * Whether a thread is writing and forcing right now.
+     */
+    private boolean flushing;
+
+    /**
+     * Failure of a flush, after which the journal is not usable.
+     */
+    private IOException failure;
+
+    /**
+     * Constructor.
+     * @param fileChannel File channel, or null to record nothing
+     * @param position Current size of the file
+     */
+    private Journal(final FileChannel fileChannel, final long position) {
+        this.channel = fileChannel;
+        this.appended = position;
+        this.durable = position;
+        if (fileChannel != null) {
+            this.buffer = ByteBuffer.allocateDirect(BUFFER);
+            this.spare = ByteBuffer.allocateDirect(BUFFER);
+        }
+    }
+
+    /**
+     * Open a journal file for appending.
+     * @param file Journal file, created if missing
+     * @return Journal
+     * @throws IOException File can not be opened
+     */
+    static Journal open(final Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new Journal(channel, channel.size());
+    }
+
+    /**
+     * Record an account opening, before the account is published.
+     * @param account Account
+     * @return Position to sync to
+     */
+    long open(final Account account) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            int start = begin(OPEN, MAX_FIXED_RECORD);
+            if (account instanceof CreditAccount) {
+                buffer.put(CREDIT_ACCOUNT);
+            } else if (account instanceof SavingsAccount) {
+                buffer.put(SAVINGS_ACCOUNT);
+            } else {
+                buffer.put(CURRENT_ACCOUNT);
+            }
+            putIban(account);
+            return end(start, account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a credit or a debit. The account monitor must be held.
+     * @param account Account
+     * @param direction Way the money went
+     * @param amount Amount in minor units
+     * @param currency Currency
+     * @return Position to sync to
+     */
+    long post(final Account account,
+            final Posting.Direction direction, final long amount,
+            final Currency currency) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            byte type = DEBIT;
+            if (direction == Posting.Direction.CREDIT) {
+                type = CREDIT;
+            }
+            int start = begin(type, MAX_FIXED_RECORD);
+            putIban(account);
+            putCurrency(currency);
+            buffer.putLong(amount);
+            return end(start, account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a transfer. Both account monitors must be held.
+     * @param debitAccount Account money was taken from
+     * @param creditAccount Account money was put to
+     * @param amount Amount in minor units
+     * @param currency Currency
+     * @return Position to sync to
+     */
+    long transfer(final Account debitAccount,
+            final Account creditAccount, final long amount,
+            final Currency currency) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            int start = begin(TRANSFER, MAX_FIXED_RECORD);
+            putIban(debitAccount);
+            putIban(creditAccount);
+            putCurrency(currency);
+            buffer.putLong(amount);
+            long position = end(start, debitAccount);
+            creditAccount.setJournalPosition(position);
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record money of a transfer across shards taken from its source, and
+     * give the transfer its id. The source monitor must be held.
+     * @param transit Transfer
+     * @return Position to sync to
+     */
+    long sent(final Transit transit) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            int start = begin(SENT, MAX_FIXED_RECORD);
+            putIban(transit.getSource());
+            putIban(transit.getTarget());
+            putCurrency(transit.getCurrency());
+            buffer.putLong(transit.getAmount());
+            long position = end(start, transit.getSource());
+            transit.setId(position);
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record money of a transfer across shards put to its target, or
+     * given back to its source. The monitor of that account must be held.
+     * @param transit Transfer, recorded as sent
+     * @param received Whether the target got the money
+     * @return Position to sync to
+     */
+    long settled(final Transit transit,
+            final boolean received) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            byte type = RETURNED;
+            Account account = transit.getSource();
+            if (received) {
+                type = RECEIVED;
+                account = transit.getTarget();
+            }
+            int start = begin(type, MAX_FIXED_RECORD);
+            buffer.putLong(transit.getId());
+            putIban(account);
+            putCurrency(transit.getCurrency());
+            buffer.putLong(transit.getAmount());
+            return end(start, account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a conversion on an account. The monitor must be held.
+     * @param account Account
+     * @param from Currency taken
+     * @param amountFrom Amount taken in minor units
+     * @param to Currency put
+     * @param amountTo Amount put in minor units
+     * @return Position to sync to
+     */
+    long convert(final Account account, final Currency from,
+            final long amountFrom, final Currency to, final long amountTo) {
+        if (channel == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            int start = begin(CONVERT, MAX_FIXED_RECORD);
+            putIban(account);
+            putCurrency(from);
+            buffer.putLong(amountFrom);
+            putCurrency(to);
+            buffer.putLong(amountTo);
+            return end(start, account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record postings of a batch to one account. The account monitor must
+     * be held.
+     * @param account Account
+     * @param postings Postings of the batch
+     * @param amounts Amounts in minor units
+     * @param picked Indexes of the postings to record
+     * @param count Number of indexes
+     * @return Position to sync to
+     */
+    long postings(final Account account,
+            final Posting[] postings, final long[] amounts, final int[] picked,
+            final int count) {
+        if (channel == null || count == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            usable();
+            int start = begin(POSTINGS, MAX_FIXED_RECORD + count * POSTING);
+            putIban(account);
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                Posting posting = postings[picked[i]];
+                byte type = DEBIT;
+                if (posting.getDirection() == Posting.Direction.CREDIT) {
+                    type = CREDIT;
+                }
+                buffer.put(type);
+                putCurrency(posting.getCurrency());
+                buffer.putLong(amounts[picked[i]]);
+            }
+            return end(start, account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refuse to append, once a flush has failed, so callers that append
+     * before they change balances leave them as they are.
+     */
+    private void usable() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Start a record, making room for it.
+     * @param type Record type
+     * @param size Largest size of the record
+     * @return Buffer position of the record
+     */
+    private int begin(final byte type, final int size) {
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(
+                Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        int start = buffer.position();
+        buffer.putLong(0);
+        buffer.put(type);
+        return start;
+    }
+
+    /**
+     * Finish a record, filling in its length and checksum.
+     * @param start Buffer position of the record
+     * @param account Account the record changed
+     * @return File position after the record
+     */
+    private long end(final int start, final Account account) {
+        int length = buffer.position() - start - HEADER;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + HEADER);
+        payload.limit(buffer.position());
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start, length);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        appended += HEADER + length;
+        account.setJournalPosition(appended);
+        return appended;
+    }
+
+    /**
+     * Append an IBAN, as ASCII characters prefixed by their count.
+     * @param account Account
+     */
+    private void putIban(final Account account) {
+        String iban = account.toString();
+        buffer.put((byte) iban.length());
+        for (int i = 0; i < iban.length(); i++) {
+            buffer.put((byte) iban.charAt(i));
+        }
+    }
+
+    /**
+     * Append a currency code, as three ASCII characters.
+     * @param currency Currency
+     */
+    private void putCurrency(final Currency currency) {
+        String code = currency.getCurrencyCode();
+        for (int i = 0; i < code.length(); i++) {
+            buffer.put((byte) code.charAt(i));
+        }
+    }
+
+    /**
+     * Wait until everything up to the position is on disk, or only note
+     * the position if the current thread defers its syncs.
+     * @param position Position returned when the record was appended
+     */
+    void sync(final long position) {
+        if (channel == null) {
+            return;
+        }
+        Map<Journal, Long> deferred = DEFERRED.get();
+        if (deferred != null) {
+            deferred.merge(this, position, Math::max);
+            return;
+        }
+        flush(position);
+    }
+
+    /**
+     * Make every sync on the current thread only note its position, until
+     * {@link #syncDeferred()} waits for all of them at once. For a thread
+     * that runs a batch of operations and reports their outcome after it.
+     */
+    static void deferSyncs() {
+        DEFERRED.set(new HashMap<>());
+    }
+
+    /**
+     * Wait until everything the current thread deferred its syncs to is
+     * on disk.
+     * @return Failure of a journal to get there, or null if all did
+     */
+    static RuntimeException syncDeferred() {
+        Map<Journal, Long> deferred = DEFERRED.get();
+        RuntimeException failure = null;
+        for (Map.Entry<Journal, Long> entry : deferred.entrySet()) {
+            try {
+                entry.getKey().flush(entry.getValue());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        deferred.clear();
+        return failure;
+    }
+
+    /**
+     * Wait until everything up to the position is on disk.
+     *
+     * If no other thread is flushing, this one writes and forces all
+     * records appended so far, on behalf of every waiting thread.
+     * @param position Position returned when the record was appended
+     */
+    private void flush(final long position) {
+        ByteBuffer batch;
+        long end;
+        lock.lock();
+        try {
+            while (true) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                if (durable >= position) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    flushed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(
+                        new InterruptedIOException("Journal sync"));
+                }
+            }
+            flushing = true;
+            batch = buffer;
+            buffer = spare;
+            spare = null;
+            end = appended;
+        } finally {
+            lock.unlock();
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        lock.lock();
+        try {
+            batch.clear();
+            spare = batch;
+            flushing = false;
+            if (error == null) {
+                durable = end;
+            } else {
+                failure = error;
+            }
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Write out everything appended and close the file.
+     * @throws IOException Write failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        long position;
+        lock.lock();
+        try {
+            position = appended;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flush(position);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Handler of a single record during recovery.
+     */
+    @FunctionalInterface
+    private interface Replayer {
+
+        /**
+         * Replay a record.
+         * @param in Record payload
+         * @param position File position after the record
+         * @throws IOException Record can not be replayed
+         */
+        void replay(ByteBuffer in, long position) throws IOException;
+
+    }
+
+    /**
+     * Rebuild accounts and balances from a journal file.
+     *
+     * Replayed changes are not journaled again. Changes an account already
+     * holds, as its journal position is not before them, are skipped.
+     * A torn record at the end of the file is cut off. Transfers across
+     * shards, that were sent and neither received nor returned, are given
+     * back to their source and recorded as returned.
+     * @param file Journal file, nothing happens if missing
+     * @param banking Banking service to replay into
+     * @return Number of records replayed
+     * @throws IOException File can not be read or refers to bad accounts
+     */
+    static long replay(final Path file, final Banking banking)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        // Openings first, so changes always find their account
+        scan(file, (in, position) -> {
+            if (in.get() == OPEN) {
+                open(banking, in.get(), getIban(in));
+            }
+        });
+        long[] records = new long[1];
+        Map<Long, Transit> transits = new LinkedHashMap<>();
+        long valid = scan(file, (in, position) -> {
+            replay(banking, in.get(), in, position, transits);
+            records[0]++;
+        });
+        if (Files.size(file) > valid) {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        if (!transits.isEmpty()) {
+            try (Journal journal = open(file)) {
+                for (Transit transit : transits.values()) {
+                    giveBack(journal, transit);
+                }
+            }
+        }
+        return records[0];
+    }
+
+    /**
+     * Give a transfer across shards, that never arrived, back to its
+     * source and record it as returned.
+     * @param journal Journal, open for appending
+     * @param transit Transfer, recorded as sent only
+     */
+    private static void giveBack(final Journal journal,
+            final Transit transit) {
+        Account account = transit.getSource();
+        synchronized (account) {
+            refund(account, transit.getCurrency(), transit.getAmount());
+            journal.settled(transit, false);
+        }
+    }
+
+    /**
+     * Read every intact record of a file.
+     * @param file Journal file
+     * @param replayer Record handler
+     * @return File position after the last intact record
+     * @throws IOException File can not be read or a record not replayed
+     */
+    private static long scan(final Path file, final Replayer replayer)
+            throws IOException {
+        long valid = 0;
+        long size = Files.size(file);
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    // A torn length may be anything, never read past the end
+                    if (length <= 0 || length > MAX_RECORD
+                            || length > size - valid - HEADER) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                valid += HEADER + payload.length;
+                replayer.replay(ByteBuffer.wrap(payload), valid);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Replay a balance change record.
+     * @param banking Banking service
+     * @param type Record type
+     * @param in Rest of the record
+     * @param position File position after the record
+     * @param transits Transfers across shards sent and not settled yet,
+     *     by id
+     * @throws IOException Record refers to an unknown account
+     */
+    private static void replay(final Banking banking, final byte type,
+            final ByteBuffer in, final long position,
+            final Map<Long, Transit> transits) throws IOException {
+        if (type == CREDIT || type == DEBIT) {
+            Account account = account(banking, getIban(in));
+            Currency currency = getCurrency(in);
+            long amount = in.getLong();
+            synchronized (account) {
+                if (account.getJournalPosition() < position) {
+                    post(account, type, currency, amount);
+                    account.setJournalPosition(position);
+                }
+            }
+        } else if (type == TRANSFER) {
+            Account debitAccount = account(banking, getIban(in));
+            Account creditAccount = account(banking, getIban(in));
+            Currency currency = getCurrency(in);
+            long amount = in.getLong();
+            // The sides may be the same account, decided only once then
+            boolean debit = isAhead(debitAccount, position);
+            boolean credit = debit;
+            if (creditAccount != debitAccount) {
+                credit = isAhead(creditAccount, position);
+            }
+            if (debit) {
+                post(debitAccount, DEBIT, currency, amount);
+            }
+            if (credit) {
+                post(creditAccount, CREDIT, currency, amount);
+            }
+        } else if (type == SENT) {
+            Account debitAccount = account(banking, getIban(in));
+            Account creditAccount = account(banking, getIban(in));
+            Currency currency = getCurrency(in);
+            long amount = in.getLong();
+            // Kept even if a snapshot holds the debit, until it is settled
+            Transit transit = new Transit(debitAccount, creditAccount,
+                amount, currency);
+            transit.setId(position);
+            transits.put(position, transit);
+            if (isAhead(debitAccount, position)) {
+                post(debitAccount, DEBIT, currency, amount);
+            }
+        } else if (type == RECEIVED || type == RETURNED) {
+            transits.remove(in.getLong());
+            Account account = account(banking, getIban(in));
+            Currency currency = getCurrency(in);
+            long amount = in.getLong();
+            if (!isAhead(account, position)) {
+                return;
+            }
+            if (type == RECEIVED) {
+                post(account, CREDIT, currency, amount);
+            } else {
+                refund(account, currency, amount);
+            }
+        } else if (type == CONVERT) {
+            Account account = account(banking, getIban(in));
+            Currency from = getCurrency(in);
+            long amountFrom = in.getLong();
+            Currency to = getCurrency(in);
+            long amountTo = in.getLong();
+            synchronized (account) {
+                if (account.getJournalPosition() < position) {
+                    account.setBalanceMinor(Money.subtract(
+                        account.balanceMinor(from), amountFrom), from);
+                    account.setBalanceMinor(Money.add(
+                        account.balanceMinor(to), amountTo), to);
+                    account.setJournalPosition(position);
+                }
+            }
+        } else if (type == POSTINGS) {
+            Account account = account(banking, getIban(in));
+            int count = in.getInt();
+            synchronized (account) {
+                if (account.getJournalPosition() >= position) {
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    byte direction = in.get();
+                    Currency currency = getCurrency(in);
+                    long amount = in.getLong();
+                    post(account, direction, currency, amount);
+                }
+                account.setJournalPosition(position);
+            }
+        }
+    }
+
+    /**
+     * Check whether a record is after the last change of an account, and
+     * move the account past it.
+     * @param account Account
+     * @param position File position after the record
+     * @return Whether the record must be replayed on the account
+     */
+    private static boolean isAhead(final Account account,
+            final long position) {
+        synchronized (account) {
+            if (account.getJournalPosition() >= position) {
+                return false;
+            }
+            account.setJournalPosition(position);
+            return true;
+        }
+    }
+
+    /**
+     * Replay an account opening.
+     * @param banking Banking service
+     * @param kind Account kind
+     * @param iban IBAN
+     * @throws IOException Account can not be opened
+     */
+    private static void open(final Banking banking, final byte kind,
+            final String iban) throws IOException {
+        try {
+            if (kind == CREDIT_ACCOUNT) {
+                banking.getCreditAccount(iban);
+            } else if (kind == SAVINGS_ACCOUNT) {
+                banking.getSavingsAccount(iban);
+            } else {
+                banking.getCurrentAccount(iban);
+            }
+        } catch (IBANException | WrongAccountTypeException e) {
+            throw new IOException("Journal can not open " + iban, e);
+        }
+    }
+
+    /**
+     * Replay a credit or a debit, without checking account rules.
+     * @param account Account
+     * @param type CREDIT or DEBIT
+     * @param currency Currency
+     * @param amount Amount in minor units
+     */
+    private static void post(final Account account, final byte type,
+            final Currency currency, final long amount) {
+        synchronized (account) {
+            long balance = account.balanceMinor(currency);
+            if (type == CREDIT) {
+                account.setBalanceMinor(Money.add(balance, amount), currency);
+                // Credit accounts take one credit only
+                if (account instanceof CreditAccount) {
+                    ((CreditAccount) account).claimCredit();
+                }
+            } else {
+                account.setBalanceMinor(Money.subtract(balance, amount),
+                    currency);
+            }
+        }
+    }
+
+    /**
+     * Replay giving money back to the source of a transfer, without
+     * checking or claiming account rules.
+     * @param account Account
+     * @param currency Currency
+     * @param amount Amount in minor units
+     */
+    private static void refund(final Account account,
+            final Currency currency, final long amount) {
+        synchronized (account) {
+            account.setBalanceMinor(Money.add(account.balanceMinor(currency),
+                amount), currency);
+        }
+    }
+
+    /**
+     * Find an account a record refers to.
+     * @param banking Banking service
+     * @param iban IBAN
+     * @return Account
+     * @throws IOException Account was never opened
+     */
+    private static Account account(final Banking banking, final String iban)
+            throws IOException {
+        Account account = banking.findAccount(iban);
+        if (account == null) {
+            throw new IOException("Journal refers to unknown account "
+                + iban);
+        }
+        return account;
+    }
+
+    /**
+     * Read an IBAN.
+     * @param in Record
+     * @return IBAN
+     */
+    private static String getIban(final ByteBuffer in) {
+        byte[] iban = new byte[in.get()];
+        in.get(iban);
+        return new String(iban, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Read a currency code.
+     * @param in Record
+     * @return Currency
+     */
+    private static Currency getCurrency(final ByteBuffer in) {
+        char first = (char) in.get();
+        char second = (char) in.get();
+        char third = (char) in.get();
+        return CurrencyIndex.currency(CurrencyIndex.ordinal(first, second,
+            third));
+    }
+
+}
@@ -0,0 +1,66 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point money arithmetic.
+ *
+ * Amounts are kept as a number of minor units (cents) in a long, which is
+ * possible because every amount is validated to have at most 2 decimal
+ * places. All arithmetic is overflow checked.
+ */
+final class Money {
+
+    /**
+     * Placeholder.
+     */
+    private Money() { }
+
+    /**
+     * Number of decimal places in a minor unit.
+     */
+    static final int SCALE = 2;
+
+    /**
+     * Convert an amount to minor units.
+     * @param amount Amount with at most 2 decimal places
+     * @return Amount in minor units
+     * @throws ArithmeticException Amount does not fit or has a fraction
+     */
+    static long toMinor(final BigDecimal amount) {
+        // Scale drops to zero, so the result is read without a BigInteger
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Convert minor units back to an amount.
+     * @param minor Amount in minor units
+     * @return Amount with 2 decimal places
+     */
+    static BigDecimal toDecimal(final long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Add two amounts.
+     * @param a Amount in minor units
+     * @param b Amount in minor units
+     * @return Sum in minor units
+     * @throws ArithmeticException Overflow
+     */
+    static long add(final long a, final long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtract an amount from another.
+     * @param a Amount in minor units
+     * @param b Amount in minor units
+     * @return Difference in minor units
+     * @throws ArithmeticException Overflow
+     */
+    static long subtract(final long a, final long b) {
+        return Math.subtractExact(a, b);
+    }
+
+}
@@ -0,0 +1,88 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A single line of a posting batch: money put into or taken out of an
+ * account.
+ */
+public final class Posting {
+
+    /**
+     * Way the money goes.
+     */
+    public enum Direction {
+
+        /**
+         * Money is put into the account.
+         */
+        CREDIT,
+
+        /**
+         * Money is taken out of the account.
+         */
+        DEBIT
+
+    }
+
+    /**
+     * IBAN of the account.
+     */
+    @Getter
+    private final String iban;
+
+    /**
+     * Way the money goes.
+     */
+    @Getter
+    private final Direction direction;
+
+    /**
+     * Amount.
+     */
+    @Getter
+    private final BigDecimal amount;
+
+    /**
+     * Currency.
+     */
+    @Getter
+    private final Currency currency;
+
+    /**
+     * Constructor.
+     * @param a IBAN of the account
+     * @param b Way the money goes
+     * @param c Amount
+     * @param d Currency object
+     */
+    public Posting(@NonNull final String a, @NonNull final Direction b,
+            @NonNull final BigDecimal c, @NonNull final Currency d) {
+        this.iban = a;
+        this.direction = b;
+        this.amount = c;
+        this.currency = d;
+    }
+
+    /**
+     * Constructor.
+     * @param a IBAN of the account
+     * @param b Way the money goes
+     * @param c Amount
+     * @param d Currency code
+     */
+    public Posting(final String a, final Direction b, final BigDecimal c,
+            final String d) {
+        this(a, b, c, CurrencyIndex.currency(d));
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + amount + " " + currency + " " + iban;
+    }
+
+}
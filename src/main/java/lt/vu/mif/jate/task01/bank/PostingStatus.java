@@ -0,0 +1,40 @@
+package lt.vu.mif.jate.task01.bank;
+
+/**
+ * Outcome of a single posting in a batch.
+ */
+public enum PostingStatus {
+
+    /**
+     * Posting was applied.
+     */
+    APPLIED,
+
+    /**
+     * No account with such IBAN.
+     */
+    UNKNOWN_ACCOUNT,
+
+    /**
+     * Amount is negative, has more than 2 decimal places or overflows the
+     * balance.
+     */
+    INVALID_AMOUNT,
+
+    /**
+     * Account has no funds to debit.
+     */
+    NO_FUNDS,
+
+    /**
+     * Account type does not allow the action.
+     */
+    REJECTED,
+
+    /**
+     * Posting was fine, but the all-or-nothing batch failed elsewhere, so
+     * it was not applied.
+     */
+    ABORTED
+
+}
@@ -0,0 +1,374 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Batch posting engine.
+ *
+ * Postings are grouped by account and currency. Every account is locked
+ * once, its postings are run through the account rules against a local
+ * running balance, and each account-currency balance is written back with
+ * a single update. Postings to the same account and currency are applied
+ * in their original order.
+ *
+ * Applied postings of an account are journaled as one record while its
+ * monitor is held, the batch waits for the journal once it is done. A
+ * crash in the middle of a batch may thus recover part of it.
+ *
+ * A best-effort batch holds one account monitor at a time. An
+ * all-or-nothing batch takes the monitors of all its accounts, in the
+ * order transfers take them, and checks every posting before it writes
+ * any balance. Nobody sees money of a batch that is aborted.
+ */
+final class Postings {
+
+    /**
+     * Postings to one account in one currency, chained through next.
+     */
+    private static final class Group {
+
+        /**
+         * Currency of the postings.
+         */
+        private final Currency currency;
+
+        /**
+         * Next group of the same account.
+         */
+        private final Group sibling;
+
+        /**
+         * Index of the first posting.
+         */
+        private int head = -1;
+
+        /**
+         * Index of the last posting.
+         */
+        private int tail = -1;
+
+        /**
+         * Balance after the admitted postings, in minor units.
+         */
+        private long balance;
+
+        /**
+         * Constructor.
+         * @param c Currency of the postings
+         * @param s Next group of the same account
+         */
+        Group(final Currency c, final Group s) {
+            this.currency = c;
+            this.sibling = s;
+        }
+
+    }
+
+    /**
+     * Postings of the batch.
+     */
+    private final Posting[] lines;
+
+    /**
+     * Account of every posting, null if not found.
+     */
+    private final Account[] targets;
+
+    /**
+     * Amounts in minor units.
+     */
+    private final long[] amounts;
+
+    /**
+     * Index of the next posting in the same group, or -1.
+     */
+    private final int[] next;
+
+    /**
+     * Outcome of every posting, null while not decided.
+     */
+    private final PostingStatus[] statuses;
+
+    /**
+     * Indexes of the postings an account record is made of.
+     */
+    private final int[] picked;
+
+    /**
+     * Whether the batch is all-or-nothing.
+     */
+    private final boolean atomic;
+
+    /**
+     * Groups of every account, in order of first appearance.
+     */
+    private final Map<Account, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     * @param postings Postings
+     * @param mode Batch mode
+     */
+    private Postings(final List<Posting> postings, final BatchMode mode) {
+        this.lines = postings.toArray(new Posting[postings.size()]);
+        this.targets = new Account[lines.length];
+        this.amounts = new long[lines.length];
+        this.next = new int[lines.length];
+        this.statuses = new PostingStatus[lines.length];
+        this.picked = new int[lines.length];
+        this.atomic = mode == BatchMode.ALL_OR_NOTHING;
+    }
+
+    /**
+     * Apply a batch of postings.
+     * @param postings Postings
+     * @param mode Batch mode
+     * @param accounts Account lookup by IBAN, returning null if not found
+     * @param journal Journal of the accounts
+     * @return Outcome of every posting, in the same order
+     */
+    static List<PostingStatus> post(final List<Posting> postings,
+            final BatchMode mode, final Function<String, Account> accounts,
+            final Journal journal) {
+        Postings batch = new Postings(postings, mode);
+        if (batch.group(accounts) || !batch.atomic) {
+            journal.sync(batch.apply(journal));
+        }
+        return Collections.unmodifiableList(Arrays.asList(batch.statuses));
+    }
+
+    /**
+     * Converts a posting amount to minor units.
+     * @param amount Amount
+     * @return Minor units, or -1 if the amount is not valid
+     */
+    static long toMinor(final BigDecimal amount) {
+        if (amount.scale() > Money.SCALE || amount.signum() < 0) {
+            return -1;
+        }
+        try {
+            return Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Resolve accounts and amounts, then group the postings.
+     * @param accounts Account lookup by IBAN
+     * @return Whether all postings are valid
+     */
+    private boolean group(final Function<String, Account> accounts) {
+        Map<String, Account> resolved = new HashMap<>();
+        boolean valid = true;
+        for (int i = 0; i < lines.length; i++) {
+            Account account = resolved.computeIfAbsent(lines[i].getIban(),
+                accounts);
+            targets[i] = account;
+            if (account == null) {
+                statuses[i] = PostingStatus.UNKNOWN_ACCOUNT;
+                valid = false;
+                continue;
+            }
+            amounts[i] = toMinor(lines[i].getAmount());
+            if (amounts[i] < 0) {
+                statuses[i] = PostingStatus.INVALID_AMOUNT;
+                valid = false;
+                continue;
+            }
+            Currency currency = lines[i].getCurrency();
+            Group first = groups.get(account);
+            Group group = first;
+            while (group != null && !group.currency.equals(currency)) {
+                group = group.sibling;
+            }
+            if (group == null) {
+                group = new Group(currency, first);
+                groups.put(account, group);
+            }
+            next[i] = -1;
+            if (group.tail < 0) {
+                group.head = i;
+            } else {
+                next[group.tail] = i;
+            }
+            group.tail = i;
+        }
+        if (!valid && atomic) {
+            abort();
+        }
+        return valid;
+    }
+
+    /**
+     * Apply the groups account by account, or all of them at once if the
+     * batch is all-or-nothing.
+     * @param journal Journal to record to
+     * @return Journal position to sync to
+     */
+    private long apply(final Journal journal) {
+        if (atomic) {
+            Account[] accounts = groups.keySet().toArray(
+                new Account[groups.size()]);
+            return Transfers.locked(accounts, () -> applyAll(journal));
+        }
+        long position = 0;
+        for (Map.Entry<Account, Group> entry: groups.entrySet()) {
+            Account account = entry.getKey();
+            synchronized (account) {
+                admit(account, entry.getValue());
+                long written;
+                try {
+                    written = record(journal, account, entry.getValue());
+                } catch (RuntimeException e) {
+                    revoke(account, entry.getValue());
+                    throw e;
+                }
+                settle(account, entry.getValue());
+                position = Math.max(position, written);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Apply all groups, or none if a posting is refused. The monitors of
+     * all accounts must be held.
+     * @param journal Journal to record to
+     * @return Journal position to sync to
+     */
+    private long applyAll(final Journal journal) {
+        for (Map.Entry<Account, Group> entry: groups.entrySet()) {
+            if (!admit(entry.getKey(), entry.getValue())) {
+                for (Map.Entry<Account, Group> admitted: groups.entrySet()) {
+                    revoke(admitted.getKey(), admitted.getValue());
+                }
+                abort();
+                return 0;
+            }
+        }
+        long position = 0;
+        try {
+            for (Map.Entry<Account, Group> entry: groups.entrySet()) {
+                position = Math.max(position, record(journal, entry.getKey(),
+                    entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<Account, Group> entry: groups.entrySet()) {
+                revoke(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+        for (Map.Entry<Account, Group> entry: groups.entrySet()) {
+            settle(entry.getKey(), entry.getValue());
+        }
+        return position;
+    }
+
+    /**
+     * Check all groups of an account against its rules, without writing
+     * balances. The monitor must be held.
+     * @param account Account
+     * @param first First group of the account
+     * @return False if an all-or-nothing batch must be aborted
+     */
+    private boolean admit(final Account account, final Group first) {
+        for (Group group = first; group != null; group = group.sibling) {
+            long balance = account.balanceMinor(group.currency);
+            for (int i = group.head; i >= 0; i = next[i]) {
+                Posting.Direction direction = lines[i].getDirection();
+                PostingStatus status = AccountRules.admit(account, direction,
+                    balance);
+                if (status == PostingStatus.APPLIED) {
+                    try {
+                        if (direction == Posting.Direction.CREDIT) {
+                            balance = Money.add(balance, amounts[i]);
+                        } else {
+                            balance = Money.subtract(balance, amounts[i]);
+                        }
+                    } catch (ArithmeticException e) {
+                        AccountRules.revoke(account, direction);
+                        status = PostingStatus.INVALID_AMOUNT;
+                    }
+                }
+                statuses[i] = status;
+                if (status != PostingStatus.APPLIED && atomic) {
+                    return false;
+                }
+            }
+            group.balance = balance;
+        }
+        return true;
+    }
+
+    /**
+     * Journal the admitted postings of an account, before its balances
+     * change. The monitor must be held.
+     * @param journal Journal
+     * @param account Account
+     * @param first First group of the account
+     * @return Journal position to sync to
+     */
+    private long record(final Journal journal, final Account account,
+            final Group first) {
+        int count = 0;
+        for (Group group = first; group != null; group = group.sibling) {
+            for (int i = group.head; i >= 0; i = next[i]) {
+                if (statuses[i] == PostingStatus.APPLIED) {
+                    picked[count++] = i;
+                }
+            }
+        }
+        return journal.postings(account, lines, amounts, picked, count);
+    }
+
+    /**
+     * Write the admitted balances of an account, once they are journaled.
+     * The monitor must be held.
+     * @param account Account
+     * @param first First group of the account
+     */
+    private void settle(final Account account, final Group first) {
+        for (Group group = first; group != null; group = group.sibling) {
+            if (group.balance != account.balanceMinor(group.currency)) {
+                account.setBalanceMinor(group.balance, group.currency);
+            }
+        }
+    }
+
+    /**
+     * Give back what admitting the postings of an account recorded on it.
+     * The monitor must be held.
+     * @param account Account
+     * @param first First group of the account
+     */
+    private void revoke(final Account account, final Group first) {
+        for (Group group = first; group != null; group = group.sibling) {
+            for (int i = group.head; i >= 0; i = next[i]) {
+                if (statuses[i] == PostingStatus.APPLIED) {
+                    AccountRules.revoke(account, lines[i].getDirection());
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark every posting, that was not refused itself, as aborted.
+     */
+    private void abort() {
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null || statuses[i] == PostingStatus.APPLIED) {
+                statuses[i] = PostingStatus.ABORTED;
+            }
+        }
+    }
+
+}
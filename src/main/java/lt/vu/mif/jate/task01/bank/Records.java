@@ -0,0 +1,288 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming reader of delimited text records, one per line.
+ *
+ * The file is read through a channel into one reusable byte buffer and
+ * split in place: every record is handed to a callback as field offsets
+ * into that buffer. Field values become strings or numbers only when the
+ * callback asks for them, nothing is collected in between.
+ *
+ * Text is UTF-8, the separator is a single ASCII character. Line ends
+ * may be LF or CRLF, empty lines are skipped.
+ */
+final class Records {
+
+    /**
+     * Placeholder.
+     */
+    private Records() { }
+
+    /**
+     * Initial size of the read buffer.
+     */
+    private static final int BUFFER = 65536;
+
+    /**
+     * Directory resources are looked up in, if not on the classpath.
+     */
+    private static final String RESOURCES = "src/test/resources";
+
+    /**
+     * Decimal radix.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Initial size of the field offset table, two per field.
+     */
+    private static final int BOUNDS = 16;
+
+    /**
+     * Callback, that receives records one by one.
+     */
+    @FunctionalInterface
+    interface Handler {
+
+        /**
+         * Handle a record.
+         * @param fields Fields of the record, valid during the call only
+         */
+        void accept(Fields fields);
+
+    }
+
+    /**
+     * Fields of the current record, as offsets into the read buffer.
+     */
+    static final class Fields {
+
+        /**
+         * Bytes of the record.
+         */
+        private byte[] data;
+
+        /**
+         * Start and end offset of every field.
+         */
+        private int[] bounds = new int[BOUNDS];
+
+        /**
+         * Number of fields.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         */
+        Fields() { }
+
+        /**
+         * Split a line into fields.
+         * @param bytes Buffer
+         * @param start Offset of the line
+         * @param end Offset after the line
+         * @param separator Separator byte
+         */
+        private void split(final byte[] bytes, final int start,
+                final int end, final byte separator) {
+            data = bytes;
+            count = 0;
+            int from = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || bytes[i] == separator) {
+                    if (2 * count + 1 >= bounds.length) {
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    }
+                    bounds[2 * count] = from;
+                    bounds[2 * count + 1] = i;
+                    count++;
+                    from = i + 1;
+                }
+            }
+        }
+
+        /**
+         * Get the number of fields.
+         * @return Number of fields
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Get a field as a string.
+         * @param index Field index
+         * @return Field value
+         */
+        String get(final int index) {
+            check(index);
+            int start = bounds[2 * index];
+            return new String(data, start, bounds[2 * index + 1] - start,
+                StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Get a field as a decimal integer, without making a string.
+         * @param index Field index
+         * @return Field value
+         * @throws NumberFormatException Field is not a decimal integer
+         */
+        int getInt(final int index) {
+            check(index);
+            int start = bounds[2 * index];
+            int end = bounds[2 * index + 1];
+            boolean negative = start < end && data[start] == '-';
+            if (negative) {
+                start++;
+            }
+            if (start == end) {
+                throw new NumberFormatException("Empty field " + index);
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit >= RADIX) {
+                    throw new NumberFormatException(get(index));
+                }
+                value = value * RADIX + digit;
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw new NumberFormatException(get(index));
+                }
+            }
+            if (negative) {
+                value = -value;
+            }
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException(get(index));
+            }
+            return (int) value;
+        }
+
+        /**
+         * Check a field index.
+         * @param index Field index
+         */
+        private void check(final int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("No field " + index
+                    + " of " + count);
+            }
+        }
+
+    }
+
+    /**
+     * Read records from a file.
+     * @param file Path to the file
+     * @param separator Field separator
+     * @param handler Record callback
+     * @throws IOException File can not be read
+     */
+    static void read(final Path file, final char separator,
+            final Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            read(channel, separator, handler);
+        }
+    }
+
+    /**
+     * Read records from a resource on the classpath, falling back to the
+     * resource directory of the working directory.
+     * @param path Resource path
+     * @param separator Field separator
+     * @param handler Record callback
+     * @throws IOException Resource can not be found or read
+     */
+    static void readResource(final String path, final char separator,
+            final Handler handler) throws IOException {
+        InputStream in = Records.class.getClassLoader()
+            .getResourceAsStream(path);
+        if (in == null) {
+            read(Paths.get(RESOURCES, path), separator, handler);
+            return;
+        }
+        try (ReadableByteChannel channel = Channels.newChannel(in)) {
+            read(channel, separator, handler);
+        }
+    }
+
+    /**
+     * Read records from a channel.
+     * @param channel Channel, read to the end
+     * @param separator Field separator
+     * @param handler Record callback
+     * @throws IOException Channel can not be read
+     */
+    private static void read(final ReadableByteChannel channel,
+            final char separator, final Handler handler) throws IOException {
+        byte delimiter = (byte) separator;
+        Fields fields = new Fields();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        // Bytes before this offset hold no line end
+        int scanned = 0;
+        boolean more = true;
+        while (more) {
+            more = channel.read(buffer) >= 0;
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+            int start = 0;
+            for (int i = scanned; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    emit(fields, bytes, start, i, delimiter, handler);
+                    start = i + 1;
+                }
+            }
+            if (!more) {
+                emit(fields, bytes, start, limit, delimiter, handler);
+                return;
+            }
+            if (start == 0 && limit == bytes.length) {
+                // A line longer than the buffer
+                buffer = ByteBuffer.wrap(Arrays.copyOf(bytes,
+                    bytes.length * 2));
+                buffer.position(limit);
+            } else {
+                System.arraycopy(bytes, start, bytes, 0, limit - start);
+                buffer.position(limit - start);
+            }
+            scanned = buffer.position();
+        }
+    }
+
+    /**
+     * Hand a line to the callback, unless it is empty.
+     * @param fields Reusable fields
+     * @param bytes Buffer
+     * @param start Offset of the line
+     * @param end Offset of the line end
+     * @param separator Separator byte
+     * @param handler Record callback
+     */
+    private static void emit(final Fields fields, final byte[] bytes,
+            final int start, final int end, final byte separator,
+            final Handler handler) {
+        int last = end;
+        if (last > start && bytes[last - 1] == '\r') {
+            last--;
+        }
+        if (last > start) {
+            fields.split(bytes, start, last, separator);
+            handler.accept(fields);
+        }
+    }
+
+}
@@ -20,24 +20,42 @@ public class SavingsAccount extends Account {
         super(iban);
     }
 
+    /**
+     * Constructor, that takes an already parsed IBAN and its bank.
+     * @param iban IBAN object
+     * @param bank Bank of the account
+     * @param banking Banking service, that the account belongs to
+     */
+    SavingsAccount(final IBAN iban, final Bank bank, final Banking banking) {
+        super(iban, bank, banking);
+    }
+
     @Override
-    public final void credit(final BigDecimal amount, final Currency currency) {
+    public final void credit(final BigDecimal amount,
+            final Currency currency) {
         Util.validateAmount(amount);
-        setBalance(balance(currency).add(amount), currency);
+        long minor = Money.toMinor(amount);
+        Journal journal = getBanking().getJournal();
+        long position;
+        synchronized (this) {
+            long balance = Money.add(balanceMinor(currency), minor);
+            position = journal.post(this, Posting.Direction.CREDIT, minor,
+                currency);
+            setBalanceMinor(balance, currency);
+        }
+        journal.sync(position);
     }
 
     @Override
     public final void debit(final BigDecimal amount, final Currency currency) {
         Util.validateAmount(amount);
-        throw new AccountActionException();
+        throw AccountActionException.getInstance();
     }
 
     @Override
     public final void debit(final BigDecimal amount, final Currency currency,
-                            final Account creditAccount) {
-        Util.validateAmount(amount);
-        debit(amount, currency);
-        creditAccount.credit(amount, currency);
+            final Account creditAccount) {
+        Transfers.transfer(this, creditAccount, amount, currency);
     }
 
 }
@@ -0,0 +1,406 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ledger engine, that partitions accounts into shards by normalized IBAN
+ * and lets one thread per shard apply all of their changes.
+ *
+ * Operations are queued to the shard of their account, on a lock-free
+ * queue, and applied one after another in queue order. A shard drains
+ * its queue in batches: it appends the records of a batch, syncs the
+ * journal once, and only then completes the futures of the batch. If the
+ * sync fails, every future of the batch, that would have succeeded,
+ * fails with it.
+ *
+ * A shard thread is the single writer of its accounts only as long as
+ * nothing else changes them: an operation runs on the shard of every
+ * account it changes, and synchronous calls leave the accounts of the
+ * ledger alone. Account monitors are still taken for every change, so a
+ * synchronous call stays safe, it is just not ordered with the shard.
+ *
+ * A transfer within one shard is applied in one step. A transfer across
+ * shards is two messages: the source shard debits and, if applied, sends
+ * the credit to the target shard; if the target refuses it, a refund goes
+ * back to the source shard. Between the two the money is in flight, in
+ * neither account. The journal records the debit as sent and the credit
+ * or refund as its settlement, so recovery gives a transfer cut off in
+ * flight back to its source.
+ */
+final class ShardedLedger {
+
+    /**
+     * Empty polls a shard yields for, before it parks.
+     */
+    private static final int IDLE_SPINS = 100;
+
+    /**
+     * Most commands a shard runs before it syncs the journal.
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * Shards.
+     */
+    private final Shard[] shards;
+
+    /**
+     * Operations submitted and not finished yet.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Whether the ledger is closed to new operations.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Shard the current thread runs, if it is a shard thread.
+     */
+    private final ThreadLocal<Shard> current = new ThreadLocal<>();
+
+    /**
+     * Shard, owned by one thread, that runs queued commands in order.
+     */
+    private final class Shard implements Executor, Runnable {
+
+        /**
+         * Commands, queued by any thread.
+         */
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Whether the shard thread is parked, or about to.
+         */
+        private final AtomicBoolean sleeping = new AtomicBoolean();
+
+        /**
+         * Shard thread.
+         */
+        private final Thread thread;
+
+        /**
+         * Completions of the batch being run, given the failure of its
+         * journal sync, or null.
+         */
+        private final List<Consumer<RuntimeException>> done =
+            new ArrayList<>();
+
+        /**
+         * Constructor.
+         * @param index Shard number
+         */
+        Shard(final int index) {
+            this.thread = new Thread(this, "ledger-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            queue.add(command);
+            wake();
+        }
+
+        /**
+         * Unpark the shard thread, if it is parked.
+         */
+        void wake() {
+            if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            current.set(this);
+            Journal.deferSyncs();
+            int idle = 0;
+            while (true) {
+                Runnable command = queue.poll();
+                if (command != null) {
+                    runBatch(command);
+                    idle = 0;
+                } else if (closed && pending.get() == 0) {
+                    return;
+                } else if (idle < IDLE_SPINS) {
+                    idle++;
+                    Thread.yield();
+                } else {
+                    sleeping.set(true);
+                    // A command queued before this check is seen by it,
+                    // one queued after it finds the flag set and unparks
+                    if (queue.isEmpty() && !(closed && pending.get() == 0)) {
+                        LockSupport.park(this);
+                    }
+                    sleeping.set(false);
+                }
+            }
+        }
+
+        /**
+         * Run queued commands, appending their journal records, then sync
+         * the journal once and complete them.
+         * @param first Command polled already
+         */
+        private void runBatch(final Runnable first) {
+            Runnable command = first;
+            for (int i = 1; command != null; i++) {
+                command.run();
+                if (i == BATCH) {
+                    break;
+                }
+                command = queue.poll();
+            }
+            RuntimeException failure = Journal.syncDeferred();
+            for (Consumer<RuntimeException> completion : done) {
+                completion.accept(failure);
+            }
+            done.clear();
+        }
+
+    }
+
+    /**
+     * Constructor. Starts the shard threads.
+     * @param count Number of shards
+     */
+    ShardedLedger(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("No shards: " + count);
+        }
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Get the number of shards.
+     * @return Number of shards
+     */
+    int size() {
+        return shards.length;
+    }
+
+    /**
+     * Find the shard of an account.
+     * @param account Account
+     * @return Shard number
+     */
+    int shardOf(final Account account) {
+        // Account hash is the hash of the normalized IBAN, spread it
+        int hash = account.hashCode();
+        hash ^= hash >>> (Integer.SIZE / 2);
+        return Math.floorMod(hash, shards.length);
+    }
+
+    /**
+     * Check, whether two accounts belong to the same shard.
+     * @param first Account
+     * @param second Other account
+     * @return True if one shard applies the changes of both
+     */
+    boolean sameShard(final Account first, final Account second) {
+        return shardOf(first) == shardOf(second);
+    }
+
+    /**
+     * Run an operation on the shard of an account.
+     * @param <T> Result type
+     * @param account Account
+     * @param operation Operation
+     * @return Future of the result
+     */
+    <T> CompletableFuture<T> submit(final Account account,
+            final Supplier<T> operation) {
+        CompletableFuture<T> result = begin();
+        shards[shardOf(account)].execute(() -> {
+            try {
+                end(result, operation.get(), null);
+            } catch (RuntimeException e) {
+                end(result, null, e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Transfer money between accounts.
+     * @param debitAccount Source account
+     * @param creditAccount Target account
+     * @param amount Amount
+     * @param currency Currency object
+     * @return Future, that completes once the target is credited, or with
+     *     the exception the transfer would throw
+     */
+    CompletableFuture<Void> transfer(final Account debitAccount,
+            final Account creditAccount, final BigDecimal amount,
+            final Currency currency) {
+        Shard source = shards[shardOf(debitAccount)];
+        Shard target = shards[shardOf(creditAccount)];
+        if (source == target) {
+            return submit(debitAccount, () -> {
+                debitAccount.debit(amount, currency, creditAccount);
+                return null;
+            });
+        }
+        CompletableFuture<Void> result = begin();
+        source.execute(() -> {
+            Transit transit = null;
+            PostingStatus status = PostingStatus.INVALID_AMOUNT;
+            try {
+                long minor = Postings.toMinor(amount);
+                if (minor >= 0) {
+                    transit = new Transit(debitAccount, creditAccount, minor,
+                        currency);
+                    status = debitAccount.trySend(transit);
+                }
+            } catch (RuntimeException e) {
+                end(result, null, e);
+                return;
+            }
+            if (status != PostingStatus.APPLIED) {
+                end(result, null, AccountRules.refusal(status));
+                return;
+            }
+            Transit sent = transit;
+            target.execute(() -> receive(sent, source, result));
+        });
+        return result;
+    }
+
+    /**
+     * Second half of a transfer across shards, on the target shard.
+     * @param transit Transfer, sent already
+     * @param source Shard of the source account
+     * @param result Future of the transfer
+     */
+    private void receive(final Transit transit, final Shard source,
+            final CompletableFuture<Void> result) {
+        RuntimeException failure = tryReceive(transit);
+        if (failure == null) {
+            end(result, null, null);
+            return;
+        }
+        source.execute(() -> {
+            try {
+                transit.getSource().giveBack(transit);
+            } catch (RuntimeException e) {
+                // Journal failed, recovery gives the unsettled transit back
+                failure.addSuppressed(e);
+            }
+            end(result, null, failure);
+        });
+    }
+
+    /**
+     * Credit the target of a transfer, catching the failure.
+     * @param transit Transfer, sent already
+     * @return Exception credit would throw, or null if credited
+     */
+    private static RuntimeException tryReceive(final Transit transit) {
+        try {
+            PostingStatus status = transit.getTarget().tryReceive(transit);
+            if (status == PostingStatus.APPLIED) {
+                return null;
+            }
+            return AccountRules.refusal(status);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Count a new operation in.
+     * @param <T> Result type
+     * @return Future of the operation
+     */
+    private <T> CompletableFuture<T> begin() {
+        pending.incrementAndGet();
+        if (closed) {
+            end(null, null, null);
+            throw new RejectedExecutionException("Ledger is closed");
+        }
+        return new CompletableFuture<>();
+    }
+
+    /**
+     * Complete an operation and count it out. On a shard thread, this
+     * waits until the batch of the operation is synced.
+     * @param <T> Result type
+     * @param result Future of the operation, or null
+     * @param value Result
+     * @param failure Exception, or null if done
+     */
+    private <T> void end(final CompletableFuture<T> result, final T value,
+            final RuntimeException failure) {
+        Shard shard = current.get();
+        if (shard == null) {
+            end(result, value, failure, null);
+        } else {
+            shard.done.add(unsynced -> end(result, value, failure,
+                unsynced));
+        }
+    }
+
+    /**
+     * Complete an operation and count it out, once its journal records
+     * are synced.
+     * @param <T> Result type
+     * @param result Future of the operation, or null
+     * @param value Result
+     * @param failure Exception, or null if done
+     * @param unsynced Failure of the journal sync, or null
+     */
+    private <T> void end(final CompletableFuture<T> result, final T value,
+            final RuntimeException failure, final RuntimeException unsynced) {
+        if (pending.decrementAndGet() == 0 && closed) {
+            for (Shard shard : shards) {
+                shard.wake();
+            }
+        }
+        if (result == null) {
+            return;
+        }
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        } else if (unsynced != null) {
+            result.completeExceptionally(unsynced);
+        } else {
+            result.complete(value);
+        }
+    }
+
+    /**
+     * Stop taking operations and wait until the ones taken are finished.
+     * @throws InterruptedException Interrupted while waiting
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        for (Shard shard : shards) {
+            shard.wake();
+        }
+        for (Shard shard : shards) {
+            if (shard.thread != Thread.currentThread()) {
+                shard.thread.join();
+            }
+        }
+    }
+
+}
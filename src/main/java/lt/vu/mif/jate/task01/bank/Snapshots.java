@@ -0,0 +1,614 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Snapshot engine, that writes all accounts and banks to a file and loads
+ * them back.
+ *
+ * Writing walks the live accounts and copies each one under its own
+ * monitor, so writers are held up for one account at a time only. Every
+ * account is stored with the journal position of its last change, which
+ * makes a snapshot exact per account, though not across accounts: the
+ * journal is replayed on top of it and fills in what came after.
+ *
+ * Loading maps the file into memory and builds accounts straight from it,
+ * without parsing IBANs or looking banks up per account.
+ *
+ * File layout: header (magic, version, bank section offset, account
+ * count), table of currency codes, account records, bank records. All
+ * numbers are big-endian, strings are UTF-8 prefixed by their length.
+ */
+final class Snapshots {
+
+    /**
+     * Placeholder.
+     */
+    private Snapshots() { }
+
+    /**
+     * File signature.
+     */
+    private static final int MAGIC = 0x4A415453;
+
+    /**
+     * File format version.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the file header.
+     */
+    private static final int HEADER = 20;
+
+    /**
+     * File position of the bank section offset in the header.
+     */
+    private static final int BANKS_AT = 8;
+
+    /**
+     * Size of the write buffer.
+     */
+    private static final int BUFFER = 65536;
+
+    /**
+     * Largest part of the file mapped at once.
+     */
+    private static final int WINDOW = 1073741824;
+
+    /**
+     * Largest size of an account record without its balances.
+     */
+    private static final int MAX_ACCOUNT = 128;
+
+    /**
+     * Size of a balance entry: currency index and amount.
+     */
+    private static final int ENTRY = Short.BYTES + Long.BYTES;
+
+    /**
+     * Size of a currency code field.
+     */
+    private static final int CURRENCY_LENGTH = 3;
+
+    /**
+     * Account kind: CurrentAccount.
+     */
+    private static final byte CURRENT_ACCOUNT = 0;
+
+    /**
+     * Account kind: CreditAccount.
+     */
+    private static final byte CREDIT_ACCOUNT = 1;
+
+    /**
+     * Account kind: SavingsAccount.
+     */
+    private static final byte SAVINGS_ACCOUNT = 2;
+
+    /**
+     * Account flag: the only credit is used up.
+     */
+    private static final byte CREDITED_ONCE = 1;
+
+    /**
+     * Length of a missing string.
+     */
+    private static final int NULL = -1;
+
+    /**
+     * Lazy holder of the background writer thread.
+     */
+    private static final class Writer {
+
+        /**
+         * Single daemon thread, that writes snapshots one after another.
+         */
+        private static final ScheduledExecutorService EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(Writer::newThread);
+
+        /**
+         * Placeholder.
+         */
+        private Writer() { }
+
+        /**
+         * Create the writer thread.
+         * @param task Task of the thread
+         * @return Daemon thread
+         */
+        private static Thread newThread(final Runnable task) {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    /**
+     * Get the background writer.
+     * @return Executor, that runs on a single daemon thread
+     */
+    static ScheduledExecutorService writer() {
+        return Writer.EXECUTOR;
+    }
+
+    /**
+     * Write a snapshot.
+     *
+     * The file is written next to the target and moved over it once
+     * complete, after the journal is on disk up to every change it holds.
+     * @param file Snapshot file
+     * @param accounts Accounts, may change while written
+     * @param banks Banks
+     * @param journal Journal the accounts record to
+     * @return Number of accounts written
+     * @throws IOException File can not be written
+     */
+    static long write(final Path file, final Collection<Account> accounts,
+            final Collection<Bank> banks, final Journal journal)
+            throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<Bank, Integer> bankIndex = new IdentityHashMap<>();
+        List<Bank> bankList = new ArrayList<>();
+        long count = 0;
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Out out = new Out(channel);
+            out.ensure(HEADER);
+            out.buffer.putInt(MAGIC);
+            out.buffer.putInt(VERSION);
+            out.buffer.putLong(0);
+            out.buffer.putInt(0);
+            int currencies = CurrencyIndex.size();
+            out.ensure(Short.BYTES + currencies * CURRENCY_LENGTH);
+            out.buffer.putShort((short) currencies);
+            for (int i = 0; i < currencies; i++) {
+                String code = CurrencyIndex.currency(i).getCurrencyCode();
+                for (int j = 0; j < CURRENCY_LENGTH; j++) {
+                    out.buffer.put((byte) code.charAt(j));
+                }
+            }
+            for (Account account: accounts) {
+                Integer index = bankIndex.get(account.getBank());
+                if (index == null) {
+                    index = bankList.size();
+                    bankIndex.put(account.getBank(), index);
+                    bankList.add(account.getBank());
+                }
+                out.ensure(MAX_ACCOUNT + currencies * ENTRY);
+                position = Math.max(position,
+                    putAccount(out.buffer, account, index));
+                count++;
+            }
+            for (Bank bank: banks) {
+                if (!bankIndex.containsKey(bank)) {
+                    bankIndex.put(bank, bankList.size());
+                    bankList.add(bank);
+                }
+            }
+            long banksAt = out.position();
+            out.ensure(Integer.BYTES);
+            out.buffer.putInt(bankList.size());
+            for (Bank bank: bankList) {
+                putBank(out, bank);
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES
+                + Integer.BYTES);
+            header.putLong(banksAt);
+            header.putInt((int) count);
+            header.flip();
+            channel.write(header, BANKS_AT);
+            // Never keep changes, that the journal could still lose
+            journal.sync(position);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Append an account, copied under its monitor.
+     * @param out Buffer with room for the record
+     * @param account Account
+     * @param bank Index of the account's bank
+     * @return Journal position of the account
+     */
+    private static long putAccount(final ByteBuffer out,
+            final Account account, final int bank) {
+        byte kind = CURRENT_ACCOUNT;
+        if (account instanceof CreditAccount) {
+            kind = CREDIT_ACCOUNT;
+        } else if (account instanceof SavingsAccount) {
+            kind = SAVINGS_ACCOUNT;
+        }
+        out.put(kind);
+        IBAN iban = account.getIban();
+        putAscii(out, iban.getIban());
+        if (iban.isAccountLong()) {
+            out.put((byte) 0);
+            out.putLong(iban.getAccountLong());
+        } else {
+            byte[] number = iban.getAccountNumber().toByteArray();
+            out.put((byte) number.length);
+            out.put(number);
+        }
+        out.putInt(bank);
+        synchronized (account) {
+            byte flags = 0;
+            if (account instanceof CreditAccount
+                    && ((CreditAccount) account).isCreditedOnce()) {
+                flags = CREDITED_ONCE;
+            }
+            out.put(flags);
+            out.putLong(account.getJournalPosition());
+            BalanceTable balances = account.getBalances();
+            out.putShort((short) balances.size());
+            for (int i = 0; i < balances.size(); i++) {
+                out.putShort((short) balances.ordinalAt(i));
+                out.putLong(balances.amountAt(i));
+            }
+            return account.getJournalPosition();
+        }
+    }
+
+    /**
+     * Append a bank.
+     * @param out Output
+     * @param bank Bank
+     * @throws IOException Buffer can not be flushed
+     */
+    private static void putBank(final Out out, final Bank bank)
+            throws IOException {
+        String country = bank.getLocale().getCountry();
+        out.ensure(Byte.BYTES + country.length() + Integer.BYTES);
+        putAscii(out.buffer, country);
+        out.buffer.putInt(bank.getCode());
+        putString(out, bank.getBicCode());
+        putString(out, bank.getName());
+        putString(out, bank.getAddress());
+    }
+
+    /**
+     * Append a short ASCII string, prefixed by its length.
+     * @param out Buffer
+     * @param value String
+     */
+    private static void putAscii(final ByteBuffer out, final String value) {
+        out.put((byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            out.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Append a string, that may be null.
+     * @param out Output
+     * @param value String
+     * @throws IOException Buffer can not be flushed
+     */
+    private static void putString(final Out out, final String value)
+            throws IOException {
+        if (value == null) {
+            out.ensure(Integer.BYTES);
+            out.buffer.putInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.ensure(Integer.BYTES + bytes.length);
+        out.buffer.putInt(bytes.length);
+        out.buffer.put(bytes);
+    }
+
+    /**
+     * Load a snapshot.
+     *
+     * Banks are merged into the known ones. Accounts already open keep
+     * their state, the rest are restored as they were written.
+     * @param file Snapshot file
+     * @param banking Banking service to load into
+     * @return Number of accounts restored
+     * @throws IOException File can not be read or is not a snapshot
+     */
+    static long load(final Path file, final Banking banking)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            In in = new In(channel);
+            in.ensure(HEADER);
+            if (in.buffer.getInt() != MAGIC
+                    || in.buffer.getInt() != VERSION) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            long banksAt = in.buffer.getLong();
+            int count = in.buffer.getInt();
+            in.ensure(Short.BYTES);
+            int[] ordinals = new int[in.buffer.getShort()];
+            in.ensure(ordinals.length * CURRENCY_LENGTH);
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = CurrencyIndex.ordinal(getAscii(in.buffer,
+                    CURRENCY_LENGTH));
+            }
+            long accountsAt = in.position();
+            in.seek(banksAt);
+            in.ensure(Integer.BYTES);
+            Bank[] banks = new Bank[in.buffer.getInt()];
+            for (int i = 0; i < banks.length; i++) {
+                banks[i] = banking.restoreBank(getBank(in));
+            }
+            in.seek(accountsAt);
+            long restored = 0;
+            for (int i = 0; i < count; i++) {
+                in.ensure(MAX_ACCOUNT);
+                Account account = getAccount(in, banks, ordinals, banking);
+                if (banking.restoreAccount(account)) {
+                    restored++;
+                }
+            }
+            return restored;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException
+                | BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot is damaged: " + file, e);
+        }
+    }
+
+    /**
+     * Read an account.
+     * @param in Input
+     * @param banks Banks of the snapshot
+     * @param ordinals Currency ordinals of the snapshot's currency indexes
+     * @param banking Banking service, that the account belongs to
+     * @return Account, not registered yet
+     * @throws IOException File can not be mapped
+     */
+    private static Account getAccount(final In in, final Bank[] banks,
+            final int[] ordinals, final Banking banking) throws IOException {
+        ByteBuffer buffer = in.buffer;
+        byte kind = buffer.get();
+        String number = getAscii(buffer, buffer.get());
+        byte length = buffer.get();
+        long accountNumber = 0;
+        byte[] digits = null;
+        if (length == 0) {
+            accountNumber = buffer.getLong();
+        } else {
+            digits = new byte[length];
+            buffer.get(digits);
+        }
+        Bank bank = banks[buffer.getInt()];
+        int country = Countries.ordinal(bank.getLocale().getCountry());
+        IBAN iban;
+        if (digits == null) {
+            iban = new IBAN(number, country, bank.getCode(), accountNumber);
+        } else {
+            iban = new IBAN(number, country, bank.getCode(),
+                new BigInteger(digits));
+        }
+        byte flags = buffer.get();
+        long position = buffer.getLong();
+        Account account;
+        if (kind == CREDIT_ACCOUNT) {
+            CreditAccount credit = new CreditAccount(iban, bank, banking);
+            if ((flags & CREDITED_ONCE) != 0) {
+                credit.claimCredit();
+            }
+            account = credit;
+        } else if (kind == SAVINGS_ACCOUNT) {
+            account = new SavingsAccount(iban, bank, banking);
+        } else {
+            account = new CurrentAccount(iban, bank, banking);
+        }
+        account.setJournalPosition(position);
+        int size = buffer.getShort();
+        in.ensure(size * ENTRY);
+        BalanceTable balances = account.getBalances();
+        for (int i = 0; i < size; i++) {
+            balances.set(ordinals[buffer.getShort()], buffer.getLong());
+        }
+        return account;
+    }
+
+    /**
+     * Read a bank.
+     * @param in Input
+     * @return Bank, not registered yet
+     * @throws IOException File can not be mapped
+     */
+    private static Bank getBank(final In in) throws IOException {
+        in.ensure(Byte.BYTES);
+        byte length = in.buffer.get();
+        in.ensure(length + Integer.BYTES);
+        String country = getAscii(in.buffer, length);
+        int code = in.buffer.getInt();
+        return new Bank(country, code, getString(in), getString(in),
+            getString(in));
+    }
+
+    /**
+     * Read an ASCII string.
+     * @param in Buffer
+     * @param length Number of characters
+     * @return String
+     */
+    private static String getAscii(final ByteBuffer in, final int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Read a string, that may be null.
+     * @param in Input
+     * @return String
+     * @throws IOException File can not be mapped
+     */
+    private static String getString(final In in) throws IOException {
+        in.ensure(Integer.BYTES);
+        int length = in.buffer.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        in.ensure(length);
+        byte[] bytes = new byte[length];
+        in.buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered output to a file channel.
+     */
+    private static final class Out {
+
+        /**
+         * File channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Bytes not written yet.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+
+        /**
+         * File position of the buffer start.
+         */
+        private long written;
+
+        /**
+         * Constructor.
+         * @param c File channel
+         */
+        Out(final FileChannel c) {
+            this.channel = c;
+        }
+
+        /**
+         * Make room in the buffer.
+         * @param size Number of bytes needed
+         * @throws IOException Buffer can not be written
+         */
+        void ensure(final int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            flush();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+        }
+
+        /**
+         * Write out the buffer.
+         * @throws IOException Write failed
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Get the current file position.
+         * @return File position
+         */
+        long position() {
+            return written + buffer.position();
+        }
+
+    }
+
+    /**
+     * Input from a file, mapped into memory a window at a time.
+     */
+    private static final class In {
+
+        /**
+         * File channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Size of the file.
+         */
+        private final long size;
+
+        /**
+         * Mapped window.
+         */
+        private MappedByteBuffer buffer;
+
+        /**
+         * File position of the window start.
+         */
+        private long base;
+
+        /**
+         * Constructor.
+         * @param c File channel
+         * @throws IOException File can not be mapped
+         */
+        In(final FileChannel c) throws IOException {
+            this.channel = c;
+            this.size = c.size();
+            seek(0);
+        }
+
+        /**
+         * Map a window, that starts at a file position.
+         * @param position File position
+         * @throws IOException File can not be mapped
+         */
+        void seek(final long position) throws IOException {
+            if (position > size) {
+                throw new IOException("Snapshot is cut short");
+            }
+            base = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(WINDOW, size - position));
+        }
+
+        /**
+         * Make sure the window holds the next bytes, if the file does.
+         * @param length Number of bytes needed
+         * @throws IOException File can not be mapped
+         */
+        void ensure(final int length) throws IOException {
+            if (buffer.remaining() < length && base + WINDOW < size) {
+                seek(position());
+            }
+        }
+
+        /**
+         * Get the current file position.
+         * @return File position
+         */
+        long position() {
+            return base + buffer.position();
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.function.LongSupplier;
+
+/**
+ * Transfer engine, that moves funds between two accounts atomically.
+ *
+ * Both account monitors are taken in a stable global order (by IBAN), so
+ * opposite transfers between the same pair of accounts can not deadlock.
+ * Account rules are checked with {@link AccountRules} instead of calling
+ * credit and debit, so the transfer is journaled once, as a whole.
+ */
+final class Transfers {
+
+    /**
+     * Placeholder.
+     */
+    private Transfers() { }
+
+    /**
+     * Lock, that breaks the tie between two distinct account objects with
+     * the same IBAN and the same identity hash.
+     */
+    private static final Object TIE_LOCK = new Object();
+
+    /**
+     * Compares two accounts to determine their locking order.
+     * @param a First account
+     * @param b Second account
+     * @return Negative, zero or positive, like a comparator
+     */
+    private static int compare(final Account a, final Account b) {
+        int order = a.toString().compareTo(b.toString());
+        if (order != 0) {
+            return order;
+        }
+        return Integer.compare(System.identityHashCode(a),
+            System.identityHashCode(b));
+    }
+
+    /**
+     * Run an action while holding the monitors of many accounts, taken in
+     * the same order transfers take them. Holds a stack frame per account.
+     * @param accounts Distinct accounts, sorted into locking order
+     * @param action Action
+     * @return Result of the action
+     */
+    static long locked(final Account[] accounts, final LongSupplier action) {
+        Arrays.sort(accounts, Transfers::compare);
+        for (int i = 1; i < accounts.length; i++) {
+            if (compare(accounts[i - 1], accounts[i]) == 0) {
+                synchronized (TIE_LOCK) {
+                    return lock(accounts, 0, action);
+                }
+            }
+        }
+        return lock(accounts, 0, action);
+    }
+
+    /**
+     * Take the monitors of accounts from an index on, then run an action.
+     * @param accounts Accounts in locking order
+     * @param from Index of the first account not locked yet
+     * @param action Action
+     * @return Result of the action
+     */
+    private static long lock(final Account[] accounts, final int from,
+            final LongSupplier action) {
+        if (from == accounts.length) {
+            return action.getAsLong();
+        }
+        synchronized (accounts[from]) {
+            return lock(accounts, from + 1, action);
+        }
+    }
+
+    /**
+     * Move funds from one account to another.
+     *
+     * Both sides are checked against the account rules before either
+     * balance is written, so a refused transfer changes nothing and
+     * publishes no events. The transfer is journaled as one record.
+     * @param debitAccount Account to take money from
+     * @param creditAccount Account to put money to
+     * @param amount Amount
+     * @param currency Currency object
+     */
+    static void transfer(final Account debitAccount,
+            final Account creditAccount, final BigDecimal amount,
+            final Currency currency) {
+        Util.validateAmount(amount);
+        long minor = Money.toMinor(amount);
+        Journal journal = debitAccount.getBanking().getJournal();
+        long position;
+        if (debitAccount == creditAccount) {
+            synchronized (debitAccount) {
+                position = move(journal, debitAccount, creditAccount, minor,
+                    currency);
+            }
+        } else {
+            int order = compare(debitAccount, creditAccount);
+            if (order == 0) {
+                synchronized (TIE_LOCK) {
+                    position = lockAndMove(journal, debitAccount,
+                        creditAccount, debitAccount, creditAccount, minor,
+                        currency);
+                }
+            } else if (order < 0) {
+                position = lockAndMove(journal, debitAccount, creditAccount,
+                    debitAccount, creditAccount, minor, currency);
+            } else {
+                position = lockAndMove(journal, creditAccount, debitAccount,
+                    debitAccount, creditAccount, minor, currency);
+            }
+        }
+        journal.sync(position);
+    }
+
+    /**
+     * Lock both accounts in the given order and move funds.
+     * @param journal Journal
+     * @param first Account to lock first
+     * @param second Account to lock second
+     * @param debitAccount Account to take money from
+     * @param creditAccount Account to put money to
+     * @param amount Amount in minor units
+     * @param currency Currency object
+     * @return Journal position to sync to
+     */
+    private static long lockAndMove(final Journal journal,
+            final Account first, final Account second,
+            final Account debitAccount, final Account creditAccount,
+            final long amount, final Currency currency) {
+        synchronized (first) {
+            synchronized (second) {
+                return move(journal, debitAccount, creditAccount, amount,
+                    currency);
+            }
+        }
+    }
+
+    /**
+     * Move funds, once both sides are admitted by the account rules.
+     * Both monitors must be held by the caller.
+     * @param journal Journal
+     * @param debitAccount Account to take money from
+     * @param creditAccount Account to put money to
+     * @param amount Amount in minor units
+     * @param currency Currency object
+     * @return Journal position to sync to
+     */
+    private static long move(final Journal journal,
+            final Account debitAccount, final Account creditAccount,
+            final long amount, final Currency currency) {
+        long before = debitAccount.balanceMinor(currency);
+        AccountRules.check(debitAccount, Posting.Direction.DEBIT, before);
+        long debited = Money.subtract(before, amount);
+        // Moving to the same account credits what the debit left
+        long balance = debited;
+        if (creditAccount != debitAccount) {
+            balance = creditAccount.balanceMinor(currency);
+        }
+        AccountRules.check(creditAccount, Posting.Direction.CREDIT, balance);
+        long credited;
+        try {
+            credited = Money.add(balance, amount);
+        } catch (ArithmeticException e) {
+            // Nothing was written, give a claimed credit back
+            AccountRules.revoke(creditAccount, Posting.Direction.CREDIT);
+            throw e;
+        }
+        long position;
+        try {
+            position = journal.transfer(debitAccount, creditAccount, amount,
+                currency);
+        } catch (RuntimeException e) {
+            AccountRules.revoke(creditAccount, Posting.Direction.CREDIT);
+            throw e;
+        }
+        debitAccount.setBalanceMinor(debited, currency);
+        creditAccount.setBalanceMinor(credited, currency);
+        return position;
+    }
+
+}
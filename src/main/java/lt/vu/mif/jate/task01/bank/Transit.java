@@ -0,0 +1,70 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+
+import java.util.Currency;
+
+/**
+ * Money of a transfer across ledger shards, taken from its source and not
+ * put to its target yet.
+ *
+ * The journal records the debit as sent, under an id, and later the
+ * credit as received or the refund as returned, under the same id, so
+ * recovery can tell a transfer that never arrived and give it back.
+ */
+final class Transit {
+
+    /**
+     * Account the money was taken from.
+     */
+    @Getter
+    private final Account source;
+
+    /**
+     * Account the money goes to.
+     */
+    @Getter
+    private final Account target;
+
+    /**
+     * Amount in minor units.
+     */
+    @Getter
+    private final long amount;
+
+    /**
+     * Currency.
+     */
+    @Getter
+    private final Currency currency;
+
+    /**
+     * Journal id, the file position after the sent record, or 0.
+     */
+    @Getter
+    private long id;
+
+    /**
+     * Constructor.
+     * @param a Account the money is taken from
+     * @param b Account the money goes to
+     * @param c Amount in minor units
+     * @param d Currency
+     */
+    Transit(final Account a, final Account b, final long c,
+            final Currency d) {
+        this.source = a;
+        this.target = b;
+        this.amount = c;
+        this.currency = d;
+    }
+
+    /**
+     * Set the journal id, once the debit is recorded.
+     * @param sent File position after the sent record
+     */
+    void setId(final long sent) {
+        this.id = sent;
+    }
+
+}
@@ -1,11 +1,7 @@
 package lt.vu.mif.jate.task01.bank;
 
-import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Currency;
-import java.util.Scanner;
 
 /**
  * Utility class.
@@ -18,50 +14,75 @@ final class Util {
     private Util() { }
 
     /**
-     * Reads a resource file into a list of strings.
+     * Streams a delimited resource file to a record callback.
+     *
+     * A missing or unreadable resource is reported and leaves the caller
+     * with whatever records were read.
      * @param path Path to resource
-     * @return List of strings
+     * @param sep Field separator
+     * @param handler Record callback
      */
-    static ArrayList<String> readResourceFile(final String path) {
-        ArrayList<String> lines = new ArrayList<>();
-        File file = new File("src/test/resources/" + path);
-        try (Scanner scanner = new Scanner(file, "UTF-8")) {
-            while (scanner.hasNextLine()) {
-                lines.add(scanner.nextLine());
-            }
-            scanner.close();
+    static void readResource(final String path, final char sep,
+            final Records.Handler handler) {
+        try {
+            Records.readResource(path, sep, handler);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return lines;
     }
 
     /**
-     * Reads a CSV file into a list of string arrays.
-     * @param path Path to resource
-     * @param sep CSV delimiter
-     * @return List of strings
+     * Number of decimal digits, that always fit into a long.
      */
-    static ArrayList<String[]> readResourceFileCSV(final String path,
-            final String sep) {
-        ArrayList<String[]> result = new ArrayList<>();
-        ArrayList<String> lines = readResourceFile(path);
-        for (String line: lines) {
-            result.add(line.split(sep));
-        }
-        return result;
-    }
+    private static final int LONG_DIGITS = 18;
 
     /**
-     * Validates money amount, ensuring it is a positive decimal with 2 digit
+     * Decimal radix.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Parses a money amount, ensuring it is a positive decimal with 2 digit
      * precision.
-     * @param value Value to be validated
+     *
+     * Digits, optionally with a decimal point followed by more digits, are
+     * checked and accumulated in a single pass; the scale of the string is
+     * kept. Only amounts with more digits than a long holds are handed to
+     * the BigDecimal parser.
+     * @param value Amount string
+     * @return Amount
+     * @throws NumberFormatException Not a valid amount
      */
-    static void validateAmount(final String value) {
-        if (!value.matches("\\d*\\.?\\d+")) {
+    static BigDecimal parseAmount(final String value) {
+        int length = value.length();
+        int point = -1;
+        int digits = 0;
+        long unscaled = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                unscaled = unscaled * RADIX + c - '0';
+                digits++;
+            } else if (c == '.' && point < 0) {
+                point = i;
+            } else {
+                throw new NumberFormatException();
+            }
+        }
+        if (digits == 0 || point == length - 1) {
             throw new NumberFormatException();
         }
-        validateAmount(new BigDecimal(value));
+        int scale = 0;
+        if (point >= 0) {
+            scale = length - point - 1;
+        }
+        if (scale > Money.SCALE) {
+            throw new NumberFormatException();
+        }
+        if (digits > LONG_DIGITS) {
+            return new BigDecimal(value);
+        }
+        return BigDecimal.valueOf(unscaled, scale);
     }
 
     /**
@@ -78,14 +99,4 @@ final class Util {
         }
     }
 
-    /**
-     * Validates a currency code.
-     * @param currency Currency code to be validated
-     */
-    static void validateCurrency(final String currency) {
-        if (Currency.getInstance(currency) == null) {
-            throw new IllegalArgumentException();
-        }
-    }
-
 }
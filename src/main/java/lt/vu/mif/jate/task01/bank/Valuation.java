@@ -0,0 +1,75 @@
+package lt.vu.mif.jate.task01.bank;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Map;
+
+/**
+ * Value of the whole book of accounts, as of a single rates snapshot.
+ */
+public final class Valuation {
+
+    /**
+     * Currency the book is valued in.
+     */
+    @Getter
+    private final Currency currency;
+
+    /**
+     * Rates snapshot all conversions used.
+     */
+    @Getter
+    private final ExchangeRates rates;
+
+    /**
+     * Number of accounts valued.
+     */
+    @Getter
+    private final int accounts;
+
+    /**
+     * Total value of all accounts.
+     */
+    @Getter
+    private final BigDecimal total;
+
+    /**
+     * Sum of all balances in every currency, not converted.
+     */
+    @Getter
+    private final Map<Currency, BigDecimal> exposure;
+
+    /**
+     * Total value of the accounts of every bank.
+     */
+    @Getter
+    private final Map<Bank, BigDecimal> bankTotals;
+
+    /**
+     * Constructor.
+     * @param a Currency the book is valued in
+     * @param b Rates snapshot
+     * @param c Number of accounts valued
+     * @param d Total value
+     * @param e Unmodifiable sums per currency
+     * @param f Unmodifiable totals per bank
+     */
+    Valuation(final Currency a, final ExchangeRates b, final int c,
+            final BigDecimal d, final Map<Currency, BigDecimal> e,
+            final Map<Bank, BigDecimal> f) {
+        this.currency = a;
+        this.rates = b;
+        this.accounts = c;
+        this.total = d;
+        this.exposure = e;
+        this.bankTotals = f;
+    }
+
+    @Override
+    public String toString() {
+        return total + " " + currency + " in " + accounts + " accounts";
+    }
+
+}
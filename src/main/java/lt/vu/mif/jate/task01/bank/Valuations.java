@@ -0,0 +1,232 @@
+package lt.vu.mif.jate.task01.bank;
+
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Valuation engine, that values a set of accounts on a fork-join pool.
+ *
+ * Workers add balances up per currency in minor units, without converting
+ * or allocating per account. Sums are converted once per currency at the
+ * end, all with the same rates snapshot.
+ */
+final class Valuations {
+
+    /**
+     * Placeholder.
+     */
+    private Valuations() { }
+
+    /**
+     * Number of accounts a worker sums up without splitting further.
+     */
+    private static final int LEAF = 4096;
+
+    /**
+     * Balance sums of a range of accounts.
+     */
+    private static final class Totals {
+
+        /**
+         * Sums in minor units, indexed by currency ordinal.
+         */
+        private final long[] currencies = new long[CurrencyIndex.size()];
+
+        /**
+         * Sums per bank, indexed by currency ordinal.
+         */
+        private final Map<Bank, long[]> banks = new IdentityHashMap<>();
+
+        /**
+         * Number of accounts summed up.
+         */
+        private int accounts;
+
+        /**
+         * Add up one range of accounts. Called once, on a leaf.
+         * @param book Accounts
+         * @param from First account index
+         * @param to Index after the last account
+         */
+        void add(final Account[] book, final int from, final int to) {
+            Bank bank = null;
+            long[] bankSums = null;
+            for (int i = from; i < to; i++) {
+                Account account = book[i];
+                // Accounts of the same bank tend to come together
+                if (account.getBank() != bank) {
+                    bank = account.getBank();
+                    bankSums = banks.get(bank);
+                    if (bankSums == null) {
+                        bankSums = new long[currencies.length];
+                        banks.put(bank, bankSums);
+                    }
+                }
+                account.addBalancesTo(bankSums);
+            }
+            for (long[] sums: banks.values()) {
+                addTo(currencies, sums);
+            }
+            accounts += to - from;
+        }
+
+        /**
+         * Merge other totals into these.
+         * @param other Other totals
+         */
+        void merge(final Totals other) {
+            addTo(currencies, other.currencies);
+            for (Map.Entry<Bank, long[]> entry: other.banks.entrySet()) {
+                long[] sums = banks.get(entry.getKey());
+                if (sums == null) {
+                    banks.put(entry.getKey(), entry.getValue());
+                } else {
+                    addTo(sums, entry.getValue());
+                }
+            }
+            accounts += other.accounts;
+        }
+
+        /**
+         * Add sums element by element.
+         * @param target Sums to add to
+         * @param source Sums to add
+         */
+        private static void addTo(final long[] target, final long[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] = Money.add(target[i], source[i]);
+            }
+        }
+
+    }
+
+    /**
+     * Sums up a range of accounts, splitting it in halves until small.
+     */
+    private static final class SumTask extends RecursiveTask<Totals> {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Accounts.
+         */
+        private final transient Account[] book;
+
+        /**
+         * First account index.
+         */
+        private final int from;
+
+        /**
+         * Index after the last account.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         * @param a Accounts
+         * @param b First account index
+         * @param c Index after the last account
+         */
+        SumTask(final Account[] a, final int b, final int c) {
+            this.book = a;
+            this.from = b;
+            this.to = c;
+        }
+
+        /**
+         * Tasks only live inside a pool, they are never deserialized.
+         * @param in Object stream
+         * @throws NotSerializableException Always
+         */
+        private void readObject(final ObjectInputStream in)
+                throws NotSerializableException {
+            throw new NotSerializableException(getClass().getName());
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= LEAF) {
+                Totals totals = new Totals();
+                totals.add(book, from, to);
+                return totals;
+            }
+            int middle = (from + to) >>> 1;
+            SumTask right = new SumTask(book, middle, to);
+            right.fork();
+            Totals totals = new SumTask(book, from, middle).compute();
+            totals.merge(right.join());
+            return totals;
+        }
+
+    }
+
+    /**
+     * Value the accounts.
+     * @param book Accounts
+     * @param currency Currency to value in
+     * @param rates Rates snapshot
+     * @param pool Pool to run on
+     * @return Valuation
+     */
+    static Valuation value(final Account[] book, final Currency currency,
+            final ExchangeRates rates, final ForkJoinPool pool) {
+        Totals totals = pool.invoke(new SumTask(book, 0, book.length));
+        Map<Currency, BigDecimal> exposure = new HashMap<>();
+        for (int i = 0; i < totals.currencies.length; i++) {
+            if (totals.currencies[i] != 0) {
+                exposure.put(CurrencyIndex.currency(i),
+                    Money.toDecimal(totals.currencies[i]));
+            }
+        }
+        Map<Bank, BigDecimal> bankTotals = new HashMap<>();
+        for (Map.Entry<Bank, long[]> entry: totals.banks.entrySet()) {
+            bankTotals.put(entry.getKey(),
+                convert(entry.getValue(), currency, rates));
+        }
+        return new Valuation(currency, rates, totals.accounts,
+            convert(totals.currencies, currency, rates),
+            Collections.unmodifiableMap(exposure),
+            Collections.unmodifiableMap(bankTotals));
+    }
+
+    /**
+     * Convert per currency sums into one amount, once per currency.
+     * Negative sums are converted by their absolute value, so they round
+     * the same way as positive ones.
+     * @param sums Sums in minor units, indexed by currency ordinal
+     * @param currency Currency to convert to
+     * @param rates Rates snapshot
+     * @return Total
+     */
+    private static BigDecimal convert(final long[] sums,
+            final Currency currency, final ExchangeRates rates) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < sums.length; i++) {
+            if (sums[i] == 0) {
+                continue;
+            }
+            // Rates take amounts that are not negative, overdrafts are
+            BigDecimal sum = Money.toDecimal(sums[i]);
+            BigDecimal converted = rates.convert(sum.abs(),
+                CurrencyIndex.currency(i), currency);
+            if (sum.signum() < 0) {
+                converted = converted.negate();
+            }
+            total = total.add(converted);
+        }
+        return total.setScale(Money.SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+}
@@ -2,7 +2,39 @@ package lt.vu.mif.jate.task01.bank.exception;
 
 /**
  * Action on the account cannot be completed.
+ *
+ * Thrown in the normal course of business, so it carries no stack trace.
+ * Hot paths throw the shared instance instead of creating a new one.
  */
 public class AccountActionException extends RuntimeException {
 
+    /**
+     * Shared instance.
+     */
+    private static final AccountActionException INSTANCE =
+        new AccountActionException(false);
+
+    /**
+     * Constructor.
+     */
+    public AccountActionException() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * @param suppression Whether suppressed exceptions are recorded
+     */
+    private AccountActionException(final boolean suppression) {
+        super(null, null, suppression, false);
+    }
+
+    /**
+     * Get the shared instance.
+     * @return Exception without stack trace or suppressed exceptions
+     */
+    public static AccountActionException getInstance() {
+        return INSTANCE;
+    }
+
 }
@@ -4,6 +4,8 @@ import lombok.Getter;
 
 /**
  * Error while parsing the IBAN.
+ *
+ * Thrown in the normal course of business, so it carries no stack trace.
  */
 public class IBANException extends Exception {
 
@@ -19,7 +21,7 @@ public class IBANException extends Exception {
      * @param message Exception message
      */
     public IBANException(final String iban, final String message) {
-        super(message);
+        super(message, null, true, false);
         this.value = iban;
     }
 
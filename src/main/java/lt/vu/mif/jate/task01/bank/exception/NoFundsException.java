@@ -2,7 +2,39 @@ package lt.vu.mif.jate.task01.bank.exception;
 
 /**
  * No funds available to complete a transaction.
+ *
+ * Thrown in the normal course of business, so it carries no stack trace.
+ * Hot paths throw the shared instance instead of creating a new one.
  */
 public class NoFundsException extends RuntimeException {
 
+    /**
+     * Shared instance.
+     */
+    private static final NoFundsException INSTANCE =
+        new NoFundsException(false);
+
+    /**
+     * Constructor.
+     */
+    public NoFundsException() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * @param suppression Whether suppressed exceptions are recorded
+     */
+    private NoFundsException(final boolean suppression) {
+        super(null, null, suppression, false);
+    }
+
+    /**
+     * Get the shared instance.
+     * @return Exception without stack trace or suppressed exceptions
+     */
+    public static NoFundsException getInstance() {
+        return INSTANCE;
+    }
+
 }
@@ -2,6 +2,8 @@ package lt.vu.mif.jate.task01.bank.exception;
 
 /**
  * Wrong account type exception.
+ *
+ * Thrown in the normal course of business, so it carries no stack trace.
  */
 public class WrongAccountTypeException extends Exception {
 
@@ -10,7 +12,7 @@ public class WrongAccountTypeException extends Exception {
      * @param message Message
      */
     public WrongAccountTypeException(final String message) {
-        super(message);
+        super(message, null, true, false);
     }
 
 }
@@ -127,4 +127,32 @@ public class Banking04Test implements BankingTestIf {
         
     }
     
+    @Test
+    public void amountFormatTest() {
+
+        Converter conv = banking.getConverter();
+
+        // Accepted like \d*\.?\d+ with at most two decimals
+        assertEquals(BD("0.50"), conv.toBase(".5", "EUR"));
+        assertEquals(BD("7.00"), conv.toBase("007", "EUR"));
+        assertEquals(BD("999999999999999999.00"),
+            conv.toBase("999999999999999999", "EUR"));
+        // More digits than a long holds
+        assertEquals(BD("1234567890123456789.12"),
+            conv.toBase("1234567890123456789.12", "EUR"));
+        assertEquals(BD("12345678901234567890123.00"),
+            conv.toBase("12345678901234567890123", "EUR"));
+
+        // Rejected, also when long enough for the BigDecimal fallback,
+        // which would take non-ASCII digits
+        Arrays.asList("5.", "", ".", "1.234", "1.2.3", "+1", " 1",
+                "\u0661\u0662", "1\u0662.00",
+                "1234567890123456789\u0661", "12345678901234567890.123")
+            .stream().forEach((s) -> {
+                checkException(s, v -> conv.toBase(v, "EUR"),
+                    NumberFormatException.class);
+            });
+
+    }
+
 }
@@ -0,0 +1,83 @@
+package lt.vu.mif.jate.task01;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static junit.framework.TestCase.assertSame;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+
+/**
+ * Banking account registry must stay consistent under concurrent use.
+ * Every IBAN must map to exactly one Account instance, no matter how many
+ * threads are racing to create it.
+ */
+@RunWith(JUnit4.class)
+public class Banking06Test {
+
+    private static final int THREADS = 64;
+
+    private static final int ACCOUNTS = 2000;
+
+    private final Banking banking = Banking.getInstance();
+
+    /**
+     * IBAN of the n-th stress test account, spelled differently per thread
+     * to exercise normalization as well.
+     */
+    private static String iban(int n, int thread) {
+        String iban = String.format("LT3373000%011d", 99000000000L + n);
+        if (thread % 2 == 1) {
+            iban = iban.toLowerCase(Locale.ENGLISH);
+        }
+        if (thread % 3 == 1) {
+            iban = iban.substring(0, 4) + " " + iban.substring(4);
+        }
+        return iban;
+    }
+
+    @Test
+    public void oneInstancePerIbanTest() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Account[]>> results = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                Callable<Account[]> task = () -> {
+                    Account[] seen = new Account[ACCOUNTS];
+                    start.await();
+                    for (int i = 0; i < ACCOUNTS; i++) {
+                        // Walk the IBANs in a different order in each thread
+                        int n = (i + thread * 31) % ACCOUNTS;
+                        seen[n] = banking.getCurrentAccount(iban(n, thread));
+                    }
+                    return seen;
+                };
+                results.add(pool.submit(task));
+            }
+            start.countDown();
+
+            for (int n = 0; n < ACCOUNTS; n++) {
+                Account expected = banking.getCurrentAccount(iban(n, 0));
+                for (Future<Account[]> result: results) {
+                    assertSame(expected, result.get()[n]);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+    }
+
+}
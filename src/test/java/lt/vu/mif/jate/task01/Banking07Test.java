@@ -0,0 +1,85 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static junit.framework.TestCase.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+
+/**
+ * Transfers between accounts must be atomic: money is never lost or
+ * created, even when transfers run concurrently in opposite directions
+ * or the credit side refuses the money.
+ */
+@RunWith(JUnit4.class)
+public class Banking07Test implements BankingTestIf {
+
+    private static final int THREADS = 16;
+
+    private static final int TRANSFERS = 5000;
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void concurrentTransferTest() throws Exception {
+
+        Account a1 = banking.getCurrentAccount("LT337300098000000001");
+        Account a2 = banking.getCurrentAccount("LT337300098000000002");
+        a1.credit(BD("1000000.00"), "EUR");
+        a2.credit(BD("1000000.00"), "EUR");
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                // Half of the threads go one way, the other half back
+                final Account from = t % 2 == 0 ? a1 : a2;
+                final Account to = t % 2 == 0 ? a2 : a1;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS; i++) {
+                        from.debit(BD("0.01"), "EUR", to);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result: results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(BD("1000000.00"), a1.balance("EUR"));
+        assertEquals(BD("1000000.00"), a2.balance("EUR"));
+
+    }
+
+    @Test
+    public void rollbackTest() throws Exception {
+
+        Account a1 = banking.getCurrentAccount("LT337300098000000003");
+        Account a2 = banking.getCreditAccount("LT337300098000000004");
+        a1.credit(BD("100.00"), "EUR");
+        a2.credit(BD("1.00"), "EUR");
+
+        // Credit account was already credited once, money must stay put
+        checkException(BD("10.00"), s -> a1.debit(s, "EUR", a2),
+            AccountActionException.class);
+        assertEquals(BD("100.00"), a1.balance("EUR"));
+        assertEquals(BD("1.00"), a2.balance("EUR"));
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import static junit.framework.TestCase.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.Converter;
+
+/**
+ * Converter must give exactly the same results as converting to the base
+ * currency and then to the target currency, rounding only once at the end.
+ * Checked for every pair of currencies.
+ */
+@RunWith(JUnit4.class)
+public class Banking08Test implements BankingTestIf {
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void crossRateTest() {
+
+        Converter conv = banking.getConverter();
+        Set<Currency> currencies = conv.getCurrencies();
+        List<BigDecimal> amounts = Arrays.asList(BD("0"), BD("0.01"),
+            BD("0.5"), BD("1"), BD("1.00"), BD("12.34"), BD("999.95"),
+            BD("1234567.89"), BD("99999999999.99"));
+
+        for (Currency cfrom: currencies) {
+            for (Currency cto: currencies) {
+                BigDecimal toBase = conv.getRateToBase(cfrom);
+                BigDecimal fromBase = conv.getRateFromBase(cto);
+                for (BigDecimal ammount: amounts) {
+                    BigDecimal result = ammount;
+                    if (!cfrom.equals(cto)) {
+                        result = ammount
+                            .multiply(toBase)
+                            .multiply(fromBase)
+                            .setScale(2, BigDecimal.ROUND_HALF_UP);
+                    }
+                    assertEquals(result, conv.convert(ammount, cfrom, cto));
+                    assertEquals(result, conv.convert(ammount.toPlainString(),
+                        cfrom.getCurrencyCode(), cto.getCurrencyCode()));
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+package lt.vu.mif.jate.task01;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.Converter;
+import lt.vu.mif.jate.task01.bank.ExchangeRates;
+
+/**
+ * Exchange rates can be reloaded while the program runs. Every reload
+ * produces a new immutable snapshot, old snapshots keep their rates.
+ */
+@RunWith(JUnit4.class)
+public class Banking09Test implements BankingTestIf {
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void reloadTest() throws Exception {
+
+        Converter conv = banking.getConverter();
+        Path original = Paths.get("src/test/resources/banking/rates.txt");
+        Path changed = Files.createTempFile("rates", ".txt");
+        Path broken = Files.createTempFile("rates", ".txt");
+        Currency usd = Currency.getInstance("USD");
+        Currency eur = Currency.getInstance("EUR");
+
+        // Same rates, except USD is worth twice as much
+        List<String> lines = Files.readAllLines(original, StandardCharsets.UTF_8)
+            .stream()
+            .map(l -> l.startsWith("USD:") ? "USD:1.7932:0.5576" : l)
+            .collect(Collectors.toList());
+        Files.write(changed, lines, StandardCharsets.UTF_8);
+        Files.write(broken, Arrays.asList("USD:0.8966:1.1163"),
+            StandardCharsets.UTF_8);
+
+        Account a1 = banking.getCurrentAccount("LT337300097000000001");
+        a1.credit(BD("100.00"), "USD");
+
+        ExchangeRates before = conv.getRates();
+        try {
+            ExchangeRates after = conv.reload(changed);
+            assertSame(after, conv.getRates());
+            assertEquals(before.getVersion() + 1, after.getVersion());
+
+            assertEquals(BD("89.66"), before.convert(BD("100.00"), usd, eur));
+            assertEquals(BD("179.32"), after.convert(BD("100.00"), usd, eur));
+            assertEquals(BD("179.32"), conv.convert("100.00", "USD", "EUR"));
+            assertEquals(BD("89.66"), a1.balanceAll(eur, before));
+            assertEquals(BD("179.32"), a1.balanceAll(eur));
+
+            // File without the base currency is rejected
+            try {
+                conv.reload(broken);
+                fail("Rates without base currency accepted");
+            } catch (IOException ex) {
+                assertSame(after, conv.getRates());
+            }
+        } finally {
+            conv.reload(original);
+            Files.delete(changed);
+            Files.delete(broken);
+        }
+
+        assertEquals(BD("89.66"), a1.balanceAll(eur));
+
+    }
+
+    @Test
+    public void watchTest() throws Exception {
+
+        Converter conv = banking.getConverter();
+        Path original = Paths.get("src/test/resources/banking/rates.txt");
+        Path directory = Files.createTempDirectory("rates");
+        Path rates = directory.resolve("rates.txt");
+        Path next = directory.resolve("rates.tmp");
+        Currency usd = Currency.getInstance("USD");
+        Currency eur = Currency.getInstance("EUR");
+        List<String> lines = Files.readAllLines(original,
+            StandardCharsets.UTF_8);
+        Files.write(rates, lines, StandardCharsets.UTF_8);
+        BlockingQueue<IOException> failures = new LinkedBlockingQueue<>();
+
+        ExchangeRates before = conv.getRates();
+        try (Closeable watch = conv.watch(rates, failures::add)) {
+            // Replaced by an atomic move: reloaded
+            Files.write(next, lines.stream()
+                .map(l -> l.startsWith("USD:") ? "USD:1.7932:0.5576" : l)
+                .collect(Collectors.toList()), StandardCharsets.UTF_8);
+            Files.move(next, rates, StandardCopyOption.ATOMIC_MOVE);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (conv.getRates() == before && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            ExchangeRates after = conv.getRates();
+            assertEquals(before.getVersion() + 1, after.getVersion());
+            assertEquals(BD("179.32"), after.convert(BD("100.00"), usd, eur));
+
+            // A file, that drops a currency, is reported and not used
+            Files.write(next, lines.stream()
+                .filter(l -> !l.startsWith("USD:"))
+                .collect(Collectors.toList()), StandardCharsets.UTF_8);
+            Files.move(next, rates, StandardCopyOption.ATOMIC_MOVE);
+            IOException failure = failures.poll(10, TimeUnit.SECONDS);
+            assertTrue(failure != null
+                && failure.getMessage().startsWith("No USD rate"));
+            assertSame(after, conv.getRates());
+        } finally {
+            conv.reload(original);
+            Files.deleteIfExists(next);
+            Files.delete(rates);
+            Files.delete(directory);
+        }
+
+    }
+
+}
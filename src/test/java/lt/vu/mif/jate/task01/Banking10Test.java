@@ -0,0 +1,101 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.IBANStatus;
+import lt.vu.mif.jate.task01.bank.exception.IBANException;
+
+/**
+ * IBAN check digits are verified with mod-97 when asked to. A valid IBAN
+ * is generated for every country in iban.txt, then broken in one digit.
+ */
+@RunWith(JUnit4.class)
+public class Banking10Test {
+
+    private final Banking banking = Banking.getInstance();
+
+    /**
+     * Reference check digits, computed the textbook way.
+     */
+    private static String checkDigits(String country, String bban) {
+        StringBuilder digits = new StringBuilder();
+        for (char c: (bban + country + "00").toCharArray()) {
+            digits.append(Character.digit(c, 36));
+        }
+        int check = 98 - new BigInteger(digits.toString())
+            .mod(BigInteger.valueOf(97)).intValue();
+        return String.format("%02d", check);
+    }
+
+    /**
+     * Fill a rule with digits and letters.
+     */
+    private static String bban(String rule, int seed) {
+        StringBuilder bban = new StringBuilder();
+        for (int i = 4; i < rule.length(); i++) {
+            char field = rule.charAt(i);
+            if (Character.isDigit(field)) {
+                bban.append(field);
+            } else if (field == 'b' || field == 'c' || field == 'k') {
+                bban.append((char) ('0' + (seed + i * 7) % 10));
+            } else {
+                bban.append((char) ('A' + (seed + i) % 26));
+            }
+        }
+        return bban.toString();
+    }
+
+    @Test
+    public void checksumCorpusTest() throws Exception {
+
+        List<String> lines = Files.readAllLines(
+            Paths.get("src/test/resources/banking/iban.txt"),
+            StandardCharsets.UTF_8);
+        assertFalse(banking.isVerifyChecksum());
+        Banking verifying = Banking.create(true);
+        assertTrue(verifying.isVerifyChecksum());
+        int seed = 0;
+        for (String line: lines) {
+            String rule = line.split(":")[1].replace(" ", "");
+            String country = rule.substring(0, 2);
+            String bban = bban(rule, seed++);
+            if (country.equals("LT")) {
+                // Lithuanian banks come from banks.txt, use an existing one
+                bban = "70440" + bban.substring(5);
+            }
+            String iban = country + checkDigits(country, bban) + bban;
+
+            Account account = verifying.getCurrentAccount(iban);
+            assertEquals(country, account.getBank().getLocale().getCountry());
+
+            // Flip one account digit
+            int c = rule.indexOf('c');
+            char[] broken = iban.toCharArray();
+            broken[c] = (char) ('0' + (broken[c] - '0' + 1) % 10);
+            try {
+                verifying.getCurrentAccount(new String(broken));
+                fail("Checksum not verified: " + new String(broken));
+            } catch (IBANException ex) {
+                assertEquals(new String(broken), ex.getValue());
+                assertTrue(ex.getMessage().contains("checksum"));
+            }
+            // The shared instance does not verify
+            assertEquals(IBANStatus.VALID,
+                banking.checkIBAN(new String(broken)));
+        }
+
+    }
+
+}
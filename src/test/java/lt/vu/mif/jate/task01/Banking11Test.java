@@ -0,0 +1,155 @@
+package lt.vu.mif.jate.task01;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.BalanceSubscription;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.BatchMode;
+import lt.vu.mif.jate.task01.bank.Posting;
+import lt.vu.mif.jate.task01.bank.PostingStatus;
+import static lt.vu.mif.jate.task01.bank.Posting.Direction.CREDIT;
+import static lt.vu.mif.jate.task01.bank.Posting.Direction.DEBIT;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.ABORTED;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.APPLIED;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.INVALID_AMOUNT;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.NO_FUNDS;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.REJECTED;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.UNKNOWN_ACCOUNT;
+
+/**
+ * Batches of postings follow the same rules as single credits and debits,
+ * either skipping what fails or applying nothing at all.
+ */
+@RunWith(JUnit4.class)
+public class Banking11Test implements BankingTestIf {
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void bestEffortTest() throws Exception {
+
+        Account current = banking.getCurrentAccount("LT337300098100000001");
+        Account credit = banking.getCreditAccount("LT337300098100000002");
+        Account savings = banking.getSavingsAccount("LT337300098100000003");
+
+        List<PostingStatus> result = banking.post(Arrays.asList(
+            new Posting(current.toString(), DEBIT, BD("1.00"), "EUR"),
+            new Posting(current.toString(), CREDIT, BD("10.00"), "EUR"),
+            new Posting(current.toString(), DEBIT, BD("25.00"), "EUR"),
+            new Posting(current.toString(), DEBIT, BD("1.00"), "EUR"),
+            new Posting(current.toString(), CREDIT, BD("5.00"), "USD"),
+            new Posting(credit.toString(), CREDIT, BD("100.00"), "EUR"),
+            new Posting(credit.toString(), CREDIT, BD("100.00"), "EUR"),
+            new Posting(savings.toString(), CREDIT, BD("7.00"), "EUR"),
+            new Posting(savings.toString(), DEBIT, BD("7.00"), "EUR"),
+            new Posting(savings.toString(), CREDIT, BD("0.001"), "EUR"),
+            new Posting(savings.toString(), CREDIT, BD("-1"), "EUR"),
+            new Posting("LT337300098199999999", CREDIT, BD("1"), "EUR")),
+            BatchMode.BEST_EFFORT);
+
+        assertEquals(Arrays.asList(NO_FUNDS, APPLIED, APPLIED, NO_FUNDS,
+            APPLIED, APPLIED, REJECTED, APPLIED, REJECTED, INVALID_AMOUNT,
+            INVALID_AMOUNT, UNKNOWN_ACCOUNT), result);
+        assertEquals(BD("-15.00"), current.balance("EUR"));
+        assertEquals(BD("5.00"), current.balance("USD"));
+        assertEquals(BD("100.00"), credit.balance("EUR"));
+        assertEquals(BD("7.00"), savings.balance("EUR"));
+
+    }
+
+    @Test
+    public void allOrNothingTest() throws Exception {
+
+        Account a1 = banking.getCurrentAccount("LT337300098100000011");
+        Account a2 = banking.getCreditAccount("LT337300098100000012");
+        Account a3 = banking.getCurrentAccount("LT337300098100000013");
+        a1.credit(BD("50.00"), "EUR");
+
+        // The last account refuses, everything before must be taken back
+        List<PostingStatus> result = banking.post(Arrays.asList(
+            new Posting(a1.toString(), DEBIT, BD("20.00"), "EUR"),
+            new Posting(a2.toString(), CREDIT, BD("20.00"), "EUR"),
+            new Posting(a3.toString(), DEBIT, BD("20.00"), "EUR")),
+            BatchMode.ALL_OR_NOTHING);
+
+        assertEquals(Arrays.asList(ABORTED, ABORTED, NO_FUNDS), result);
+        assertEquals(BD("50.00"), a1.balance("EUR"));
+        assertEquals(BD("0.00"), a2.balance("EUR"));
+        assertEquals(BD("0.00"), a3.balance("EUR"));
+
+        // The credit account may still take its only credit
+        result = banking.post(Arrays.asList(
+            new Posting(a1.toString(), DEBIT, BD("20.00"), "EUR"),
+            new Posting(a2.toString(), CREDIT, BD("20.00"), "EUR")),
+            BatchMode.ALL_OR_NOTHING);
+
+        assertEquals(Arrays.asList(APPLIED, APPLIED), result);
+        assertEquals(BD("30.00"), a1.balance("EUR"));
+        assertEquals(BD("20.00"), a2.balance("EUR"));
+
+    }
+
+    @Test
+    public void largeBatchTest() throws Exception {
+
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.add(banking.getCurrentAccount(
+                String.format("LT3373000981%08d", 100 + i)));
+        }
+
+        List<PostingStatus> result = banking.post(IntStream.range(0, 100000)
+            .mapToObj(i -> new Posting(accounts.get(i % 10).toString(),
+                CREDIT, BD("0.01"), "EUR")), BatchMode.ALL_OR_NOTHING);
+
+        assertEquals(100000, result.stream().filter(APPLIED::equals).count());
+        for (Account account: accounts) {
+            assertEquals(BD("100.00"), account.balance("EUR"));
+        }
+
+    }
+
+    @Test
+    public void abortedUnseenTest() throws Exception {
+
+        Account a1 = banking.getCurrentAccount("LT337300098100000021");
+        Account a2 = banking.getCurrentAccount("LT337300098100000022");
+
+        List<String> events = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        BalanceSubscription subscription = banking.subscribe(e -> {
+            if (e.getIban().equals(a1.toString())) {
+                events.add(e.getDelta().toString());
+                latch.countDown();
+            }
+        });
+
+        try {
+            // The first account would be credited, if the second had funds
+            List<PostingStatus> result = banking.post(Arrays.asList(
+                new Posting(a1.toString(), CREDIT, BD("20.00"), "EUR"),
+                new Posting(a2.toString(), DEBIT, BD("20.00"), "EUR")),
+                BatchMode.ALL_OR_NOTHING);
+            assertEquals(Arrays.asList(ABORTED, NO_FUNDS), result);
+            a1.credit(BD("1.00"), "EUR");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            subscription.close();
+        }
+
+        assertEquals(Arrays.asList("1.00"), events);
+        assertEquals(BD("1.00"), a1.balance("EUR"));
+
+    }
+
+}
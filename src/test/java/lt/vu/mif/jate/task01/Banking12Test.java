@@ -0,0 +1,89 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ForkJoinPool;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Bank;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.ExchangeRates;
+import lt.vu.mif.jate.task01.bank.Valuation;
+
+/**
+ * The whole book can be valued at once, per currency and per bank.
+ */
+@RunWith(JUnit4.class)
+public class Banking12Test implements BankingTestIf {
+
+    private static final int ACCOUNTS = 20000;
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void valuationTest() throws Exception {
+
+        Currency eur = Currency.getInstance("EUR");
+        Currency usd = Currency.getInstance("USD");
+        Bank bank = null;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = banking.getCurrentAccount(
+                String.format("DE0098765432%010d", i));
+            account.credit(BD("1.00"), eur);
+            account.credit(BD("0.50"), usd);
+            bank = account.getBank();
+        }
+
+        ExchangeRates rates = banking.getConverter().getRates();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Valuation valuation;
+        try {
+            valuation = banking.valuate(eur, rates, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertSame(rates, valuation.getRates());
+        assertTrue(valuation.getAccounts() >= ACCOUNTS);
+        BigDecimal expected = BD("20000.00")
+            .add(rates.convert(BD("10000.00"), usd, eur));
+        assertEquals(expected, valuation.getBankTotals().get(bank));
+        assertTrue(valuation.getExposure().get(eur)
+            .compareTo(BD("20000.00")) >= 0);
+        assertTrue(valuation.getTotal().compareTo(expected) >= 0);
+
+        // Same result on the common pool
+        assertEquals(expected,
+            banking.valuate(eur).getBankTotals().get(bank));
+
+    }
+
+    @Test
+    public void overdraftTest() throws Exception {
+
+        Currency eur = Currency.getInstance("EUR");
+        Currency usd = Currency.getInstance("USD");
+        Account account =
+            banking.getCurrentAccount("DE00876543210000000001");
+        account.credit(BD("10.00"), eur);
+        account.debit(BD("25.00"), eur);
+        account.credit(BD("1.00"), usd);
+        account.debit(BD("3.00"), usd);
+
+        ExchangeRates rates = banking.getConverter().getRates();
+        Valuation valuation = banking.valuate(eur, rates,
+            ForkJoinPool.commonPool());
+
+        BigDecimal expected = BD("-15.00")
+            .subtract(rates.convert(BD("2.00"), usd, eur));
+        assertEquals(expected,
+            valuation.getBankTotals().get(account.getBank()));
+
+    }
+
+}
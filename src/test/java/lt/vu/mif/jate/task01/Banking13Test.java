@@ -0,0 +1,117 @@
+package lt.vu.mif.jate.task01;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Currency;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.BatchMode;
+import lt.vu.mif.jate.task01.bank.Posting;
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+
+/**
+ * Balances survive a crash: a separate JVM journals some operations and
+ * halts without closing the journal, this one recovers from it.
+ */
+@RunWith(JUnit4.class)
+public class Banking13Test implements BankingTestIf {
+
+    private static final String CURRENT = "LT337300098200000001";
+
+    private static final String CREDIT = "LT337300098200000002";
+
+    private static final String SAVINGS = "LT337300098200000003";
+
+    private final Banking banking = Banking.getInstance();
+
+    /**
+     * Journal some operations, then crash.
+     */
+    public static void main(String[] args) throws Exception {
+        Banking banking = Banking.getInstance();
+        banking.openJournal(Paths.get(args[0]));
+        Account current = banking.getCurrentAccount(CURRENT);
+        Account credit = banking.getCreditAccount(CREDIT);
+        Account savings = banking.getSavingsAccount(SAVINGS);
+        current.credit(new BigDecimal("100.00"), "EUR");
+        current.debit(new BigDecimal("30.00"), "EUR");
+        current.convert(new BigDecimal("10.00"), "EUR", "USD");
+        credit.credit(new BigDecimal("50.00"), "EUR");
+        savings.credit(new BigDecimal("20.00"), "EUR");
+        current.debit(new BigDecimal("5.00"), "EUR", savings);
+        Posting posting = new Posting(CURRENT, Posting.Direction.CREDIT,
+            new BigDecimal("1.00"), "EUR");
+        banking.post(Arrays.asList(posting, posting, posting),
+            BatchMode.BEST_EFFORT);
+        Runtime.getRuntime().halt(0);
+    }
+
+    @Test
+    public void recoveryTest() throws Exception {
+
+        Path journal = Files.createTempFile("journal", ".bin");
+        try {
+            Process child = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java")
+                        .toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Banking13Test.class.getName(), journal.toString())
+                .directory(new File(System.getProperty("user.dir")))
+                .inheritIO()
+                .start();
+            assertEquals(0, child.waitFor());
+
+            // A torn record at the end must be cut off, without reading
+            // as much as its garbage length says
+            long size = Files.size(journal);
+            Files.write(journal, new byte[] {0x3F, -1, -1, -1, 0, 0, 0, 0,
+                1, 2}, StandardOpenOption.APPEND);
+
+            assertEquals(10, banking.openJournal(journal));
+            assertEquals(size, Files.size(journal));
+
+            Account current = banking.getCurrentAccount(CURRENT);
+            Account credit = banking.getCreditAccount(CREDIT);
+            Account savings = banking.getSavingsAccount(SAVINGS);
+            assertEquals(BD("58.00"), current.balance("EUR"));
+            assertEquals(banking.getConverter().convert(BD("10.00"),
+                Currency.getInstance("EUR"), Currency.getInstance("USD")),
+                current.balance("USD"));
+            assertEquals(BD("50.00"), credit.balance("EUR"));
+            assertEquals(BD("25.00"), savings.balance("EUR"));
+
+            // The credit account has used up its only credit before
+            checkException(BD("1.00"), s -> credit.credit(s, "EUR"),
+                AccountActionException.class);
+
+            // Journaling goes on into the same file
+            current.credit(BD("1.00"), "EUR");
+            assertTrue(Files.size(journal) > size);
+
+        } finally {
+            banking.closeJournal();
+            deleteQuietly(journal);
+        }
+
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Temporary file, nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package lt.vu.mif.jate.task01;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.BatchMode;
+import lt.vu.mif.jate.task01.bank.Posting;
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+
+/**
+ * Startup from a snapshot: a separate JVM journals some operations, takes
+ * a snapshot, goes on and crashes. This one loads the snapshot and replays
+ * only what the snapshot misses.
+ */
+@RunWith(JUnit4.class)
+public class Banking14Test implements BankingTestIf {
+
+    private static final String CURRENT = "LT337300098300000001";
+
+    private static final String CREDIT = "LT337300098300000002";
+
+    private static final String SAVINGS = "LT337300098300000003";
+
+    private static final String LATE = "LT337300098300000004";
+
+    private final Banking banking = Banking.getInstance();
+
+    /**
+     * Journal some operations, snapshot, journal more, then crash.
+     */
+    public static void main(String[] args) throws Exception {
+        Banking banking = Banking.getInstance();
+        banking.openJournal(Paths.get(args[0]));
+        Account current = banking.getCurrentAccount(CURRENT);
+        Account credit = banking.getCreditAccount(CREDIT);
+        Account savings = banking.getSavingsAccount(SAVINGS);
+        current.credit(new BigDecimal("100.00"), "EUR");
+        credit.credit(new BigDecimal("50.00"), "EUR");
+        savings.credit(new BigDecimal("20.00"), "EUR");
+        current.debit(new BigDecimal("5.00"), "EUR", savings);
+
+        if (banking.writeSnapshot(Paths.get(args[1])).get() != 3) {
+            Runtime.getRuntime().halt(1);
+        }
+
+        current.credit(new BigDecimal("10.00"), "EUR");
+        // Applied to the current account first, then taken back
+        banking.post(Arrays.asList(
+            new Posting(CURRENT, Posting.Direction.CREDIT,
+                new BigDecimal("1.00"), "EUR"),
+            new Posting(CREDIT, Posting.Direction.CREDIT,
+                new BigDecimal("1.00"), "EUR")),
+            BatchMode.ALL_OR_NOTHING);
+        banking.post(Arrays.asList(
+            new Posting(CURRENT, Posting.Direction.DEBIT,
+                new BigDecimal("2.00"), "EUR")),
+            BatchMode.BEST_EFFORT);
+        current.debit(new BigDecimal("3.00"), "EUR", savings);
+        banking.getCurrentAccount(LATE).credit(new BigDecimal("7.00"), "EUR");
+        Runtime.getRuntime().halt(0);
+    }
+
+    @Test
+    public void startupTest() throws Exception {
+
+        Path journal = Files.createTempFile("journal", ".bin");
+        Path snapshot = Files.createTempFile("snapshot", ".bin");
+        try {
+            Process child = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java")
+                        .toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Banking14Test.class.getName(), journal.toString(),
+                    snapshot.toString())
+                .directory(new File(System.getProperty("user.dir")))
+                .inheritIO()
+                .start();
+            assertEquals(0, child.waitFor());
+            assertFalse(Files.exists(
+                snapshot.resolveSibling(snapshot.getFileName() + ".tmp")));
+
+            assertEquals(3, banking.loadSnapshot(snapshot));
+            banking.openJournal(journal);
+
+            // Nothing is applied twice, nothing after the snapshot is lost
+            assertEquals(BD("100.00"), banking.getCurrentAccount(CURRENT)
+                .balance("EUR"));
+            assertEquals(BD("28.00"), banking.getSavingsAccount(SAVINGS)
+                .balance("EUR"));
+            assertEquals(BD("7.00"), banking.getCurrentAccount(LATE)
+                .balance("EUR"));
+            Account credit = banking.getCreditAccount(CREDIT);
+            assertEquals(BD("50.00"), credit.balance("EUR"));
+
+            // The only credit was used up before the snapshot
+            checkException(BD("1.00"), s -> credit.credit(s, "EUR"),
+                AccountActionException.class);
+
+        } finally {
+            banking.closeJournal();
+            deleteQuietly(journal);
+            deleteQuietly(snapshot);
+        }
+
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Temporary file, nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package lt.vu.mif.jate.task01;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Bank;
+import lt.vu.mif.jate.task01.bank.Banking;
+
+/**
+ * Bank directory: banks of any country are loaded from a directory file
+ * and found by country and code, by BIC and by name; banks created for
+ * new accounts are created once.
+ */
+@RunWith(JUnit4.class)
+public class Banking15Test {
+
+    private static final int THREADS = 16;
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void directoryTest() throws Exception {
+
+        Path file = Files.createTempFile("banks", ".txt");
+        try {
+            Files.write(file, Arrays.asList(
+                "Deutsche Bank:Taunusanlage 12, Frankfurt:DEUTDEFFXXX:50070010",
+                "BNP Paribas:16 Bd des Italiens, Paris:BNPAFRPPXXX:30004",
+                "Banque Populaire:Paris:CCBPFRPPXXX:10207",
+                "",
+                "No BIC:Nowhere::12345"), StandardCharsets.UTF_8);
+
+            assertEquals(3, banking.loadBanks(file));
+            // Known banks are kept
+            assertEquals(0, banking.loadBanks(file));
+        } finally {
+            Files.delete(file);
+        }
+
+        Bank deutsche = banking.getBank("DE", 50070010);
+        assertEquals("DE", deutsche.getLocale().getCountry());
+        assertEquals("Deutsche Bank", deutsche.getName());
+        assertEquals("Taunusanlage 12, Frankfurt", deutsche.getAddress());
+
+        assertSame(deutsche, banking.findBankByBic("DEUTDEFF"));
+        assertSame(deutsche, banking.findBankByBic("deutdeffxxx"));
+        assertSame(banking.getBank("LT", 70440),
+            banking.findBankByBic("CBVILT2XXXX"));
+        assertNull(banking.findBankByBic("NONEXXXXXXX"));
+
+        assertEquals(Arrays.asList(banking.getBank("FR", 30004)),
+            banking.findBanksByName("bnp"));
+        assertEquals(2, banking.findBanksByName("B").size());
+        assertEquals(0, banking.findBanksByName("BNP Paribas!").size());
+
+    }
+
+    @Test
+    public void concurrentCreationTest() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Bank>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                final String iban = String.format("EE0077%014d", t);
+                Callable<Bank> task = () -> {
+                    start.await();
+                    return banking.getCurrentAccount(iban).getBank();
+                };
+                results.add(pool.submit(task));
+            }
+            start.countDown();
+            for (Future<Bank> result: results) {
+                Bank bank = result.get();
+                assertSame(banking.getBank("EE", 77), bank);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+    }
+
+}
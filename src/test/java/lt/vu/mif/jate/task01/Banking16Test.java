@@ -0,0 +1,83 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.IBAN;
+
+/**
+ * Accounts and IBANs are equal by their normalized IBAN number, so they
+ * can be kept in hash sets and used as map keys.
+ */
+@RunWith(JUnit4.class)
+public class Banking16Test {
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void ibanSetTest() throws Exception {
+
+        IBAN first = new IBAN("LT337300098400000001", "LT", 73000,
+            BigInteger.valueOf(9840000001L));
+        IBAN same = new IBAN("LT337300098400000001", "LT", 73000,
+            BigInteger.valueOf(9840000001L));
+        IBAN other = new IBAN("LT337300098400000002", "LT", 73000,
+            BigInteger.valueOf(9840000002L));
+        BigInteger large = BigInteger.TEN.pow(30);
+        IBAN long1 = new IBAN("XX00000001000000000000000000000000", "XX", 1,
+            large);
+        IBAN long2 = new IBAN("XX00000001000000000000000000000000", "XX", 1,
+            large);
+
+        assertEquals(first, same);
+        assertEquals(first.hashCode(), same.hashCode());
+        assertFalse(first.equals(other));
+        assertEquals(long1, long2);
+        assertEquals(large, long2.getAccountNumber());
+        assertEquals(BigInteger.valueOf(9840000001L), same.getAccountNumber());
+
+        Set<IBAN> set = new HashSet<>(Arrays.asList(first, other, long1));
+        assertTrue(set.contains(same));
+        assertTrue(set.contains(long2));
+        assertFalse(set.add(same));
+        assertEquals(3, set.size());
+
+    }
+
+    @Test
+    public void accountSetTest() throws Exception {
+
+        Account plain = banking.getCurrentAccount("LT337300098400000003");
+        Account spaced = banking.getCurrentAccount("lt33 7300 0984 0000 0003");
+        Account other = banking.getSavingsAccount("LT337300098400000004");
+
+        assertEquals(plain, spaced);
+        assertEquals(plain.hashCode(), spaced.hashCode());
+        assertFalse(plain.equals(other));
+        assertFalse(plain.equals("LT337300098400000003"));
+
+        Set<Account> set = new HashSet<>(Arrays.asList(plain, other));
+        assertFalse(set.add(spaced));
+        assertEquals(2, set.size());
+
+        Map<Account, Integer> counts = new HashMap<>();
+        for (Account account: Arrays.asList(plain, spaced, other)) {
+            counts.merge(account, 1, Integer::sum);
+        }
+        assertEquals(Integer.valueOf(2), counts.get(plain));
+        assertEquals(Integer.valueOf(1), counts.get(other));
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package lt.vu.mif.jate.task01;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.IBANStatus;
+import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.APPLIED;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.INVALID_AMOUNT;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.NO_FUNDS;
+import static lt.vu.mif.jate.task01.bank.PostingStatus.REJECTED;
+
+/**
+ * Expected business failures are reported as statuses, or thrown as
+ * exceptions without stack traces.
+ */
+@RunWith(JUnit4.class)
+public class Banking17Test implements BankingTestIf {
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void tryTest() throws Exception {
+
+        Account current = banking.getCurrentAccount("LT337300098500000001");
+        Account credit = banking.getCreditAccount("LT337300098500000002");
+        Account savings = banking.getSavingsAccount("LT337300098500000003");
+
+        assertEquals(NO_FUNDS, current.tryDebit(BD("1.00"), "EUR"));
+        assertEquals(APPLIED, current.tryCredit(BD("10.00"), "EUR"));
+        assertEquals(APPLIED, current.tryDebit(BD("25.00"), "EUR"));
+        assertEquals(NO_FUNDS, current.tryDebit(BD("1.00"), "EUR"));
+        assertEquals(INVALID_AMOUNT, current.tryCredit(BD("0.001"), "EUR"));
+        assertEquals(INVALID_AMOUNT, current.tryCredit(BD("-1"), "EUR"));
+        assertEquals(BD("-15.00"), current.balance("EUR"));
+
+        assertEquals(APPLIED, credit.tryCredit(BD("100.00"), "EUR"));
+        assertEquals(REJECTED, credit.tryCredit(BD("100.00"), "EUR"));
+        assertEquals(BD("100.00"), credit.balance("EUR"));
+
+        assertEquals(APPLIED, savings.tryCredit(BD("7.00"), "EUR"));
+        assertEquals(REJECTED, savings.tryDebit(BD("7.00"), "EUR"));
+        assertEquals(BD("7.00"), savings.balance("EUR"));
+
+    }
+
+    @Test
+    public void checkIBANTest() throws Exception {
+
+        assertEquals(IBANStatus.VALID,
+            banking.checkIBAN("lt33 7300 0985 0000 0009"));
+        assertEquals(IBANStatus.UNKNOWN_COUNTRY,
+            banking.checkIBAN("LL331234010077211111"));
+        assertEquals(IBANStatus.WRONG_LENGTH,
+            banking.checkIBAN("LT33123401007721111"));
+        assertEquals(IBANStatus.WRONG_FORMAT,
+            banking.checkIBAN("NO1225251234S77"));
+
+    }
+
+    @Test
+    public void stacklessTest() throws Exception {
+
+        Account current = banking.getCurrentAccount("LT337300098500000004");
+        NoFundsException first = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                current.debit(BD("1.00"), "EUR");
+                fail("Should have failed with NoFundsException");
+            } catch (NoFundsException ex) {
+                assertEquals(0, ex.getStackTrace().length);
+                if (first == null) {
+                    first = ex;
+                }
+                assertSame(first, ex);
+            }
+        }
+
+    }
+
+    @Test
+    public void convertInvalidTest() throws Exception {
+
+        Account current = banking.getCurrentAccount("LT337300098500000005");
+        current.credit(BD("10.00"), "EUR");
+        checkException(BD("1.234"), s -> current.convert(s, "EUR", "USD"),
+            NumberFormatException.class);
+        checkException(BD("-1.00"), s -> current.convert(s, "EUR", "USD"),
+            NumberFormatException.class);
+        assertEquals(BD("10.00"), current.balance("EUR"));
+
+    }
+
+}
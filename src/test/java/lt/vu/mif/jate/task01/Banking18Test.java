@@ -0,0 +1,101 @@
+package lt.vu.mif.jate.task01;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.BalanceSubscription;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+
+/**
+ * Balance changes are streamed to subscribers in order.
+ */
+@RunWith(JUnit4.class)
+public class Banking18Test implements BankingTestIf {
+
+    private static final String PREFIX = "LT3373000986";
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void subscribeTest() throws Exception {
+
+        Account a = banking.getCurrentAccount("LT337300098600000001");
+        Account b = banking.getCurrentAccount("LT337300098600000002");
+
+        List<String> events = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+        BalanceSubscription subscription = banking.subscribe(e -> {
+            if (e.getIban().startsWith(PREFIX)) {
+                events.add(e.getIban() + " " + e.getCurrency() + " "
+                    + e.getDelta() + " " + e.getBalance());
+                sequences.add(e.getSequence());
+                latch.countDown();
+            }
+        });
+
+        try {
+            a.credit(BD("100.00"), "EUR");
+            a.debit(BD("30.00"), "EUR");
+            a.debit(BD("20.00"), "EUR", b);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            subscription.close();
+        }
+
+        assertEquals(4, events.size());
+        assertEquals("LT337300098600000001 EUR 100.00 100.00", events.get(0));
+        assertEquals("LT337300098600000001 EUR -30.00 70.00", events.get(1));
+        assertEquals("LT337300098600000001 EUR -20.00 50.00", events.get(2));
+        assertEquals("LT337300098600000002 EUR 20.00 20.00", events.get(3));
+        for (int i = 1; i < sequences.size(); i++) {
+            assertTrue(sequences.get(i) > sequences.get(i - 1));
+        }
+        assertEquals(0, subscription.getLost());
+
+    }
+
+    @Test
+    public void refusedTransferTest() throws Exception {
+
+        Account a = banking.getCurrentAccount("LT337300098600000003");
+        Account b = banking.getCreditAccount("LT337300098600000004");
+        a.credit(BD("10.00"), "EUR");
+        b.credit(BD("1.00"), "EUR");
+
+        List<String> events = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        BalanceSubscription subscription = banking.subscribe(e -> {
+            if (e.getIban().equals(a.toString())
+                    || e.getIban().equals(b.toString())) {
+                events.add(e.getIban() + " " + e.getDelta());
+                latch.countDown();
+            }
+        });
+
+        try {
+            // The credit account takes no second credit, so nothing moves
+            checkException(BD("2.00"), s -> a.debit(s, "EUR", b),
+                AccountActionException.class);
+            a.debit(BD("1.00"), "EUR");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            subscription.close();
+        }
+
+        assertEquals(1, events.size());
+        assertEquals("LT337300098600000003 -1.00", events.get(0));
+        assertEquals(BD("9.00"), a.balance("EUR"));
+        assertEquals(BD("1.00"), b.balance("EUR"));
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package lt.vu.mif.jate.task01;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.AsyncBanking;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
+
+/**
+ * Asynchronous operations run in submission order per account.
+ */
+@RunWith(JUnit4.class)
+public class Banking19Test implements BankingTestIf {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void orderTest() throws Exception {
+
+        Account a = banking.getCurrentAccount("LT337300098700000001");
+        Account b = banking.getCurrentAccount("LT337300098700000002");
+        Account c = banking.getCurrentAccount("LT337300098700000003");
+        AsyncBanking async = banking.async();
+
+        // Every transfer succeeds only if the one before it ran first
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(async.creditAsync(a, BD("1.00"), EUR));
+        for (int i = 0; i < 1000; i++) {
+            futures.add(async.transferAsync(a, b, BD("1.00"), EUR));
+            futures.add(async.transferAsync(b, c, BD("1.00"), EUR));
+            futures.add(async.transferAsync(c, a, BD("1.00"), EUR));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .get();
+
+        assertEquals(BD("1.00"), async.balanceAsync(a, EUR).get());
+        assertEquals(BD("0.00"), async.balanceAsync(b, EUR).get());
+        assertEquals(BD("0.00"), async.balanceAsync(c, EUR).get());
+
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+
+        Account a = banking.getCurrentAccount("LT337300098700000004");
+        Account b = banking.getCurrentAccount("LT337300098700000005");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            AsyncBanking async = banking.async(pool);
+            CompletableFuture<Void> refused =
+                async.transferAsync(a, b, BD("1.00"), EUR);
+            CompletableFuture<Void> credited =
+                async.creditAsync(a, BD("2.00"), EUR);
+            try {
+                refused.get();
+                fail("Should have failed with NoFundsException");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof NoFundsException);
+            }
+            credited.get();
+            assertEquals(BD("2.00"), async.balanceAsync(a, EUR).get());
+            assertEquals(BD("0.00"), async.balanceAsync(b, EUR).get());
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+}
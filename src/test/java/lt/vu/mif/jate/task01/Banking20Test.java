@@ -0,0 +1,240 @@
+package lt.vu.mif.jate.task01;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Account;
+import lt.vu.mif.jate.task01.bank.AsyncBanking;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.exception.AccountActionException;
+import lt.vu.mif.jate.task01.bank.exception.NoFundsException;
+
+/**
+ * Sharded ledger applies transfers within and across shards.
+ */
+@RunWith(JUnit4.class)
+public class Banking20Test implements BankingTestIf {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private static final String SOURCE = "LT337300098840000001";
+
+    private static final String TARGET = "LT3373000988400000%02d";
+
+    private static final int TARGETS = 10;
+
+    private static final String MARKER = "LT337300098850000001";
+
+    private final Banking banking = Banking.getInstance();
+
+    /**
+     * Start a transfer across shards, and crash once the source is debited
+     * and before the target is credited.
+     */
+    public static void main(String[] args) throws Exception {
+        Banking banking = Banking.getInstance();
+        banking.openJournal(Paths.get(args[0]));
+        AsyncBanking async = banking.async(2);
+        Account source = banking.getCurrentAccount(SOURCE);
+        source.credit(new BigDecimal("10.00"), EUR);
+        String shard = async.submit(source,
+            () -> Thread.currentThread().getName()).get();
+        Account target = null;
+        for (int i = 2; target == null; i++) {
+            Account candidate =
+                banking.getCurrentAccount(String.format(TARGET, i));
+            if (!shard.equals(async.submit(candidate,
+                    () -> Thread.currentThread().getName()).get())) {
+                target = candidate;
+            }
+        }
+        // Hold the target shard, so the credit never runs
+        CountDownLatch never = new CountDownLatch(1);
+        async.submit(target, () -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        async.transferAsync(source, target, new BigDecimal("4.00"), EUR);
+        while (!source.balance(EUR).equals(new BigDecimal("6.00"))) {
+            Thread.yield();
+        }
+        // Returns once the journal is on disk up to the debit and beyond
+        banking.getCurrentAccount(MARKER).credit(new BigDecimal("1.00"), EUR);
+        Runtime.getRuntime().halt(0);
+    }
+
+    @Test
+    public void transferTest() throws Exception {
+
+        Account[] accounts = new Account[20];
+        try (AsyncBanking async = banking.async(4)) {
+            for (int i = 0; i < accounts.length; i++) {
+                accounts[i] = banking.getCurrentAccount(
+                    String.format("LT3373000988000000%02d", i));
+                async.creditAsync(accounts[i], BD("10.00"), EUR).get();
+            }
+            Random random = new Random(1);
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                futures.add(async.transferAsync(
+                    accounts[random.nextInt(accounts.length)],
+                    accounts[random.nextInt(accounts.length)],
+                    BD("1.00"), EUR));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    assertTrue(ex.getCause() instanceof NoFundsException);
+                }
+            }
+            BigDecimal total = BD("0.00");
+            for (Account account : accounts) {
+                total = total.add(async.balanceAsync(account, EUR).get());
+            }
+            assertEquals(BD("200.00"), total);
+        }
+
+    }
+
+    @Test
+    public void refundTest() throws Exception {
+
+        try (AsyncBanking async = banking.async(4)) {
+            for (int i = 0; i < 8; i++) {
+                Account from = banking.getCurrentAccount(
+                    String.format("LT3373000988100000%02d", i));
+                Account to = banking.getCreditAccount(
+                    String.format("LT3373000988200000%02d", i));
+                from.credit(BD("5.00"), EUR);
+                to.credit(BD("1.00"), EUR);
+                try {
+                    async.transferAsync(from, to, BD("2.00"), EUR).get();
+                    fail("Should have failed with AccountActionException");
+                } catch (ExecutionException ex) {
+                    assertTrue(ex.getCause()
+                        instanceof AccountActionException);
+                }
+                assertEquals(BD("5.00"), async.balanceAsync(from, EUR).get());
+                assertEquals(BD("1.00"), async.balanceAsync(to, EUR).get());
+            }
+        }
+
+    }
+
+    @Test
+    public void closeTest() throws Exception {
+
+        Account account = banking.getCurrentAccount("LT337300098830000001");
+        AsyncBanking async = banking.async(2);
+        CompletableFuture<Void> credited =
+            async.creditAsync(account, BD("3.00"), EUR);
+        async.close();
+        assertTrue(credited.isDone());
+        assertEquals(BD("3.00"), account.balance(EUR));
+        try {
+            async.creditAsync(account, BD("3.00"), EUR);
+            fail("Should have failed with RejectedExecutionException");
+        } catch (RejectedExecutionException ex) {
+            assertEquals(BD("3.00"), account.balance(EUR));
+        }
+
+    }
+
+    @Test
+    public void pairTest() throws Exception {
+
+        try (AsyncBanking async = banking.async(2)) {
+            Account first = banking.getCurrentAccount("LT337300098860000001");
+            String shard = async.submit(first,
+                () -> Thread.currentThread().getName()).get();
+            Account same = null;
+            Account other = null;
+            for (int i = 2; same == null || other == null; i++) {
+                Account candidate = banking.getCurrentAccount(
+                    String.format("LT3373000988600000%02d", i));
+                if (shard.equals(async.submit(candidate,
+                        () -> Thread.currentThread().getName()).get())) {
+                    same = candidate;
+                } else {
+                    other = candidate;
+                }
+            }
+            // Both accounts on one shard: runs there
+            assertEquals(shard, async.submit(first, same,
+                () -> Thread.currentThread().getName()).get());
+            // Across shards, nothing runs
+            checkException(other, o -> async.submit(first, o, () -> {
+                o.credit(BD("1.00"), EUR);
+                return null;
+            }), UnsupportedOperationException.class);
+            assertEquals(BD("0.00"), async.balanceAsync(other, EUR).get());
+        }
+
+    }
+
+    @Test
+    public void recoveryTest() throws Exception {
+
+        Path journal = Files.createTempFile("journal", ".bin");
+        try {
+            Process child = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java")
+                        .toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Banking20Test.class.getName(), journal.toString())
+                .directory(new File(System.getProperty("user.dir")))
+                .inheritIO()
+                .start();
+            assertEquals(0, child.waitFor());
+
+            // The debit is on disk, the credit never happened: the money
+            // goes back to the source, and that is journaled too
+            long size = Files.size(journal);
+            banking.openJournal(journal);
+            assertTrue(Files.size(journal) > size);
+
+            assertEquals(BD("10.00"),
+                banking.getCurrentAccount(SOURCE).balance(EUR));
+            for (int i = 2; i < TARGETS; i++) {
+                assertEquals(BD("0.00"), banking.getCurrentAccount(
+                    String.format(TARGET, i)).balance(EUR));
+            }
+
+        } finally {
+            banking.closeJournal();
+            deleteQuietly(journal);
+        }
+
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Temporary file, nothing to do
+        }
+    }
+
+}
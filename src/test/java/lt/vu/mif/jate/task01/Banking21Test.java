@@ -0,0 +1,119 @@
+package lt.vu.mif.jate.task01;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import lt.vu.mif.jate.task01.bank.Banking;
+import lt.vu.mif.jate.task01.bank.Converter;
+import lt.vu.mif.jate.task01.bank.ExchangeRates;
+
+/**
+ * Data files are read record by record, one per line, whatever their
+ * line ends and line lengths. Resources missing from the classpath are
+ * read from src/test/resources.
+ */
+@RunWith(JUnit4.class)
+public class Banking21Test implements BankingTestIf {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final Banking banking = Banking.getInstance();
+
+    @Test
+    public void linesTest() throws Exception {
+
+        Converter conv = banking.getConverter();
+        Path original = Paths.get("src/test/resources/banking/rates.txt");
+        List<String> lines = Files.readAllLines(original,
+            StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("rates", ".txt");
+        ExchangeRates before = conv.getRates();
+        try {
+            // A missing file leaves the rates as they are
+            try {
+                conv.reload(file.resolveSibling("missing-rates.txt"));
+                fail("Missing file read");
+            } catch (NoSuchFileException ex) {
+                assertSame(before, conv.getRates());
+            }
+
+            // CRLF, a line without separator, and a line far longer than
+            // the read buffer
+            String zeros = String.join("", Collections.nCopies(100000, "0"));
+            String text = lines.stream()
+                .map(l -> l.startsWith("USD:")
+                    ? "USD:1.7932" + zeros + ":0.5576" : l)
+                .collect(Collectors.joining("\r\n", "no separator\r\n",
+                    "\r\n"));
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            ExchangeRates loaded = conv.reload(file);
+            assertEquals(before.getCurrencies(), loaded.getCurrencies());
+            assertEquals(BD("179.32"), loaded.convert(BD("100.00"), USD, EUR));
+            assertEquals(BD("55.76"), loaded.convert(BD("100.00"), EUR, USD));
+
+            // The last line counts without a line end too
+            text = lines.stream()
+                .filter(l -> !l.startsWith("USD:"))
+                .collect(Collectors.joining("\n", "", "\nUSD:0.4483:2.2326"));
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            loaded = conv.reload(file);
+            assertEquals(before.getCurrencies(), loaded.getCurrencies());
+            assertEquals(BD("44.83"), loaded.convert(BD("100.00"), USD, EUR));
+        } finally {
+            conv.reload(original);
+            Files.delete(file);
+        }
+
+    }
+
+    @Test
+    public void resourceFallbackTest() throws Exception {
+
+        // Main classes only, without the test resources on the classpath
+        URL classes = Banking.class.getProtectionDomain().getCodeSource()
+            .getLocation();
+        try (URLClassLoader loader =
+                new URLClassLoader(new URL[] {classes}, null)) {
+            assertNull(loader.getResource("banking/rates.txt"));
+            Class<?> type = Class.forName(Banking.class.getName(), true,
+                loader);
+            Object isolated = type.getMethod("getInstance").invoke(null);
+
+            Object conv = type.getMethod("getConverter").invoke(isolated);
+            Set<?> currencies = (Set<?>) conv.getClass()
+                .getMethod("getCurrencies").invoke(conv);
+            assertEquals(banking.getConverter().getCurrencies(), currencies);
+            assertEquals(banking.getConverter().getRateFromBase(USD),
+                (BigDecimal) conv.getClass()
+                    .getMethod("getRateFromBase", Currency.class)
+                    .invoke(conv, USD));
+
+            // Bank codes are parsed from their field
+            Object bank = type.getMethod("getBank", String.class,
+                Integer.class).invoke(isolated, "LT", 70440);
+            assertEquals(banking.getBank("LT", 70440).toString(),
+                bank.toString());
+        }
+
+    }
+
+}